@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.javastack.figaro.Chest;
+import org.javastack.figaro.ChestBounded;
+import org.javastack.figaro.ChestMpscBounded;
+import org.javastack.figaro.ChestMpscUnbounded;
+import org.javastack.figaro.ChestUnbounded;
+import org.javastack.figaro.GossipType;
+import org.javastack.figaro.Whisper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Chest implementations in isolation, single thread (cost of offer/poll without contention)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChestBenchmark {
+	static final int BURST = 64;
+	static final Whisper<Integer> WHISPER = new Whisper<Integer>(GossipType.NULL, Integer.valueOf(1));
+	//
+	@Param({
+			"ChestUnbounded", "ChestBounded", "ChestMpscUnbounded", "ChestMpscBounded"
+	})
+	public String chestType;
+	@Param({
+		"1024"
+	})
+	public int capacity;
+	//
+	private Chest<Whisper<?>> chest;
+	private final List<Whisper<?>> burst = new ArrayList<Whisper<?>>(BURST);
+	private final List<Whisper<?>> sink = new ArrayList<Whisper<?>>(BURST);
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		chest = createChest(chestType, capacity);
+		burst.clear();
+		for (int i = 0; i < BURST; i++) {
+			burst.add(WHISPER);
+		}
+	}
+
+	@Benchmark
+	public Whisper<?> offerPoll() {
+		chest.offer(WHISPER);
+		return chest.poll();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public void offerBurstPollBurst() {
+		for (int i = 0; i < BURST; i++) {
+			chest.offer(WHISPER);
+		}
+		for (int i = 0; i < BURST; i++) {
+			chest.poll();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public int offerAllDrainTo() {
+		chest.offerAll(burst);
+		final int n = chest.drainTo(sink, BURST);
+		sink.clear();
+		return n;
+	}
+
+	static Chest<Whisper<?>> createChest(final String chestType, final int capacity) {
+		if ("ChestUnbounded".equals(chestType))
+			return new ChestUnbounded<Whisper<?>>();
+		if ("ChestBounded".equals(chestType))
+			return new ChestBounded<Whisper<?>>(capacity);
+		if ("ChestMpscUnbounded".equals(chestType))
+			return new ChestMpscUnbounded<Whisper<?>>();
+		if ("ChestMpscBounded".equals(chestType))
+			return new ChestMpscBounded<Whisper<?>>(capacity);
+		throw new IllegalArgumentException("Invalid chestType: " + chestType);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.javastack.figaro.Chest;
+import org.javastack.figaro.Whisper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Chest implementations in isolation, N producers and one consumer (as TalkerContext).
+ * <p>
+ * Producers per consumer are set with <code>-tg N,1</code>. Unbounded chests can grow during an
+ * iteration if producers outrun the consumer.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+	"-Xmx2g"
+})
+public class ChestContendedBenchmark {
+	@Param({
+			"ChestUnbounded", "ChestBounded", "ChestMpscUnbounded", "ChestMpscBounded"
+	})
+	public String chestType;
+	@Param({
+		"1024"
+	})
+	public int capacity;
+	//
+	private Chest<Whisper<?>> chest;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		chest = ChestBenchmark.createChest(chestType, capacity);
+	}
+
+	@Benchmark
+	@Group("mpsc")
+	@GroupThreads(1)
+	public boolean offer(final Control control) {
+		while (!chest.offer(ChestBenchmark.WHISPER)) {
+			if (control.stopMeasurement)
+				return false;
+		}
+		return true;
+	}
+
+	@Benchmark
+	@Group("mpsc")
+	@GroupThreads(1)
+	public Whisper<?> poll(final Control control) {
+		Whisper<?> whisper;
+		while ((whisper = chest.poll()) == null) {
+			if (control.stopMeasurement)
+				return null;
+		}
+		return whisper;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javastack.figaro.AbstractTalker;
+import org.javastack.figaro.Destination;
+import org.javastack.figaro.GossipMonger;
+import org.javastack.figaro.TalkerType;
+import org.javastack.figaro.Whisper;
+import org.javastack.figaro.WhisperPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end throughput of each TalkerType: each invocation sends a burst and waits until all
+ * recipients processed it, so queues do not grow without limit.
+ * <p>
+ * Producer scaling is set with <code>-t N</code>, allocation rate with <code>-prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TalkerTypeBenchmark {
+	static final int BURST = 1024;
+	static final Integer PAYLOAD = Integer.valueOf(1);
+	//
+	@Param({
+			"INPLACE_UNSYNC", "INPLACE_SYNC", "INPLACE_COMBINING", "QUEUED_UNBOUNDED", "QUEUED_BOUNDED",
+			"QUEUED_VIRTUAL", "QUEUED_MPSC_UNBOUNDED", "QUEUED_MPSC_BOUNDED"
+	})
+	public String type;
+	@Param({
+			"UNICAST", "BROADCAST"
+	})
+	public String fanout;
+	@Param({
+		"4"
+	})
+	public int receivers;
+	@Param({
+			"false", "true"
+	})
+	public boolean pooled;
+	//
+	private GossipMonger gossipMonger;
+	private Receiver[] talkers;
+	private Destination dest;
+	private int recipients;
+	private WhisperPool<Integer> pool;
+	private final AtomicLong expected = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		gossipMonger = GossipMonger.getDefaultInstance();
+		talkers = new Receiver[receivers];
+		for (int i = 0; i < receivers; i++) {
+			talkers[i] = new Receiver("recv" + i, TalkerType.valueOf(type));
+			talkers[i].registerListener();
+		}
+		if ("BROADCAST".equals(fanout)) {
+			dest = gossipMonger.getDestination("BROADCAST");
+			recipients = receivers;
+		} else {
+			dest = gossipMonger.getDestination(talkers[0].getName());
+			recipients = 1;
+		}
+		pool = new WhisperPool<Integer>(BURST * 4);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (final Receiver talker : talkers) {
+			talker.unregisterListener();
+		}
+		gossipMonger.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public void send() {
+		for (int i = 0; i < BURST; i++) {
+			gossipMonger.send(pooled ? pool.acquire(null, dest, PAYLOAD) : //
+					new Whisper<Integer>(null, dest, PAYLOAD));
+		}
+		final long target = expected.addAndGet(BURST * recipients);
+		while (processed() < target) {
+			Thread.yield();
+		}
+	}
+
+	private long processed() {
+		long count = 0;
+		for (final Receiver talker : talkers) {
+			count += talker.count.get();
+		}
+		return count;
+	}
+
+	static class Receiver extends AbstractTalker {
+		final AtomicLong count = new AtomicLong();
+
+		Receiver(final String name, final TalkerType type) {
+			super(name, type);
+		}
+
+		@Override
+		public void newMessage(final Whisper<?> whisper) {
+			count.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher backed by an ExecutorService (abstract implementation)
+ */
+public abstract class AbstractDispatcher implements Dispatcher {
+	/**
+	 * Default messages processed by a Talker before yield the thread
+	 */
+	public static final int DEFAULT_THROUGHPUT = 1024;
+	//
+	protected final ExecutorService executor;
+	private final int throughput;
+
+	protected AbstractDispatcher(final ExecutorService executor, final int throughput) {
+		if (throughput < 1)
+			throw new IllegalArgumentException("Invalid throughput: " + throughput);
+		this.executor = executor;
+		this.throughput = throughput;
+	}
+
+	@Override
+	public void dispatch(final Runnable task) {
+		executor.execute(task);
+	}
+
+	@Override
+	public int getThroughput() {
+		return throughput;
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public void shutdownNow() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + executor + "]";
+	}
+}
@@ -37,8 +37,56 @@ public abstract class AbstractTalker implements Talker {
 	 * @param type
 	 */
 	public AbstractTalker(final String name, final TalkerType type) {
-		this.gossipMonger = GossipMonger.getDefaultInstance();
-		this.state = gossipMonger.initTalker(name, type, this);
+		this(name, type, TalkerConfig.DEFAULT);
+	}
+
+	/**
+	 * Create talker assigned to a dispatcher (only used by QUEUED types)
+	 * 
+	 * @param name
+	 * @param type
+	 * @param dispatcher if null use the default of GossipMonger
+	 */
+	public AbstractTalker(final String name, final TalkerType type, final Dispatcher dispatcher) {
+		this(name, type, new TalkerConfig().setDispatcher(dispatcher));
+	}
+
+	/**
+	 * Create talker with settings
+	 * 
+	 * @param name
+	 * @param type
+	 * @param config
+	 */
+	public AbstractTalker(final String name, final TalkerType type, final TalkerConfig config) {
+		this(GossipMonger.getDefaultInstance(), name, type, config);
+	}
+
+	/**
+	 * Create talker bound to a GossipMonger
+	 * 
+	 * @param gossipMonger
+	 * @param name
+	 * @param type
+	 */
+	public AbstractTalker(final GossipMonger gossipMonger, final String name, final TalkerType type) {
+		this(gossipMonger, name, type, TalkerConfig.DEFAULT);
+	}
+
+	/**
+	 * Create talker bound to a GossipMonger, with settings
+	 * 
+	 * @param gossipMonger
+	 * @param name
+	 * @param type
+	 * @param config
+	 */
+	public AbstractTalker(final GossipMonger gossipMonger, final String name, final TalkerType type,
+			final TalkerConfig config) {
+		if (gossipMonger == null)
+			throw new IllegalArgumentException("Invalid GossipMonger");
+		this.gossipMonger = gossipMonger;
+		this.state = gossipMonger.initTalker(name, type, config, this);
 	}
 
 	@Override
@@ -56,6 +104,48 @@ public abstract class AbstractTalker implements Talker {
 		gossipMonger.registerListenerTalker(type, this);
 	}
 
+	/**
+	 * Unregister extra Type/Name (or pattern) in GossipMonger
+	 * 
+	 * @param type
+	 */
+	public void unregisterExtraType(final String type) {
+		gossipMonger.unregisterListenerTalker(type, this);
+	}
+
+	/**
+	 * Register Type/Name with a filter (evaluated by sender before queueing), only accepted
+	 * messages are received (in addition to other subscriptions)
+	 * 
+	 * @param type
+	 * @param filter
+	 */
+	public void registerFilter(final String type, final WhisperFilter filter) {
+		gossipMonger.registerFilterTalker(type, new FilterTable.Subscription(this, filter));
+	}
+
+	/**
+	 * Register Type/Name with an equality filter, only messages with key equals to value are
+	 * received. Subscribers that share the key instance are indexed by value (one lookup per
+	 * message instead of one evaluation per subscriber).
+	 * 
+	 * @param type
+	 * @param key
+	 * @param value
+	 */
+	public void registerFilter(final String type, final WhisperKey key, final Object value) {
+		gossipMonger.registerFilterTalker(type, new FilterTable.Subscription(this, key, value));
+	}
+
+	/**
+	 * Unregister filters of Type/Name
+	 * 
+	 * @param type
+	 */
+	public void unregisterFilter(final String type) {
+		gossipMonger.unregisterFilterTalker(type, this);
+	}
+
 	@Override
 	public String getName() {
 		return state.getName();
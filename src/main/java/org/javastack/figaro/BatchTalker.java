@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.List;
+
+/**
+ * Talker that receive queued messages in batches (optional interface)
+ * <p>
+ * Only used by QUEUED types, INPLACE types always receive messages by {@link #newMessage(Whisper)}.
+ */
+public interface BatchTalker extends Talker {
+	/**
+	 * New messages for this Talker, in order
+	 * <p>
+	 * The list is reused after return, do not keep a reference to it.
+	 * 
+	 * @param batch up to batchSize messages (never empty)
+	 */
+	public void newMessages(final List<Whisper<?>> batch);
+}
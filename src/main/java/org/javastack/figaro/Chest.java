@@ -14,6 +14,9 @@
  */
 package org.javastack.figaro;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Container for messages
  */
@@ -46,4 +49,21 @@ public interface Chest<T extends Whisper<?>> {
 	 * @return true if element is added
 	 */
 	public boolean offer(final T value);
+
+	/**
+	 * Add elements to chest, in order, until chest is full
+	 * 
+	 * @param values
+	 * @return number of elements added (from the beginning of the list)
+	 */
+	public int offerAll(final List<? extends T> values);
+
+	/**
+	 * Remove up to maxElements from chest and add them to the collection
+	 * 
+	 * @param sink
+	 * @param maxElements
+	 * @return number of elements transferred
+	 */
+	public int drainTo(final Collection<? super T> sink, final int maxElements);
 }
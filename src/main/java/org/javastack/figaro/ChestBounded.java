@@ -14,8 +14,9 @@
  */
 package org.javastack.figaro;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Memory container for messages (size bounded)
@@ -38,12 +39,7 @@ public class ChestBounded<T extends Whisper<?>> implements Chest<T> {
 
 	@Override
 	public T poll() {
-		try {
-			return chest.poll(1000, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-		}
-		return null;
+		return chest.poll();
 	}
 
 	@Override
@@ -51,6 +47,20 @@ public class ChestBounded<T extends Whisper<?>> implements Chest<T> {
 		return chest.offer(value);
 	}
 
+	@Override
+	public int drainTo(final Collection<? super T> sink, final int maxElements) {
+		return chest.drainTo(sink, maxElements);
+	}
+
+	@Override
+	public int offerAll(final List<? extends T> values) {
+		final int size = values.size();
+		int n = 0;
+		while ((n < size) && chest.offer(values.get(n)))
+			n++;
+		return n;
+	}
+
 	@Override
 	public int size() {
 		return chest.size();
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Container for messages that keeps only the latest pending message of each key (extracted with a
+ * {@link WhisperKey}): a message whose key is already pending replaces it, in the place of the
+ * first one (order of keys is kept). Slow consumers see only the freshest state and the backlog is
+ * bounded by the distinct keys, not by message rate. Messages with null key are not conflated.
+ * <p>
+ * Replaced messages are released (pooled messages return to pool).
+ * 
+ * @see TalkerConfig#setChest(Chest)
+ */
+public class ChestConflating implements Chest<Whisper<?>> {
+	private final WhisperKey key;
+	private final int capacity;
+	// Guarded by this
+	private final ArrayDeque<Slot> order = new ArrayDeque<Slot>();
+	private final HashMap<Object, Slot> pending = new HashMap<Object, Slot>();
+	private volatile int size = 0;
+	private volatile long conflated = 0;
+
+	/**
+	 * Create chest without limit of pending keys
+	 * 
+	 * @param key extractor of conflation key
+	 */
+	public ChestConflating(final WhisperKey key) {
+		this(key, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create chest
+	 * 
+	 * @param key extractor of conflation key
+	 * @param capacity maximum pending messages (distinct keys), a new key is refused when full
+	 */
+	public ChestConflating(final WhisperKey key, final int capacity) {
+		if (key == null)
+			throw new IllegalArgumentException("Invalid WhisperKey");
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		this.key = key;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return messages replaced by a newer one of same key
+	 * 
+	 * @return count
+	 */
+	public long getConflated() {
+		return conflated;
+	}
+
+	@Override
+	public synchronized Whisper<?> poll() {
+		final Slot slot = order.poll();
+		if (slot == null)
+			return null;
+		if (slot.key != null)
+			pending.remove(slot.key);
+		size = order.size();
+		return slot.value;
+	}
+
+	@Override
+	public boolean offer(final Whisper<?> value) {
+		final Object k = key.key(value);
+		final Whisper<?> replaced;
+		synchronized (this) {
+			final Slot slot = (k == null ? null : pending.get(k));
+			if (slot == null) {
+				if (order.size() >= capacity)
+					return false;
+				final Slot newSlot = new Slot(k, value);
+				order.offer(newSlot);
+				if (k != null)
+					pending.put(k, newSlot);
+				size = order.size();
+				return true;
+			}
+			replaced = slot.value;
+			slot.value = value;
+			conflated++;
+		}
+		replaced.release();
+		return true;
+	}
+
+	@Override
+	public int offerAll(final List<? extends Whisper<?>> values) {
+		final int size = values.size();
+		int n = 0;
+		while ((n < size) && offer(values.get(n)))
+			n++;
+		return n;
+	}
+
+	@Override
+	public synchronized int drainTo(final Collection<? super Whisper<?>> sink, final int maxElements) {
+		int n = 0;
+		Slot slot;
+		while ((n < maxElements) && ((slot = order.poll()) != null)) {
+			if (slot.key != null)
+				pending.remove(slot.key);
+			sink.add(slot.value);
+			n++;
+		}
+		size = order.size();
+		return n;
+	}
+
+	private static final class Slot {
+		final Object key;
+		Whisper<?> value;
+
+		Slot(final Object key, final Whisper<?> value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
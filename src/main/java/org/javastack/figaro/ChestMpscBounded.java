@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Memory container for messages (size bounded), lock-free ring buffer for multiple producers and a
+ * single consumer
+ * <p>
+ * Only the TalkerContext (one thread at a time) can call {@link #poll()}.
+ */
+public class ChestMpscBounded<T extends Whisper<?>> implements Chest<T> {
+	private final AtomicReferenceArray<T> buffer;
+	private final int mask;
+	private final PaddedAtomicLong producerIndex = new PaddedAtomicLong();
+	// Cached consumerIndex + capacity, avoid reading consumerIndex on each offer
+	private final PaddedAtomicLong producerLimit;
+	private final PaddedAtomicLong consumerIndex = new PaddedAtomicLong();
+
+	/**
+	 * Create chest
+	 * 
+	 * @param size minimal capacity (rounded up to power of 2)
+	 */
+	public ChestMpscBounded(final int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Invalid size: " + size);
+		final int capacity = roundToPowerOfTwo(size);
+		buffer = new AtomicReferenceArray<T>(capacity);
+		mask = capacity - 1;
+		producerLimit = new PaddedAtomicLong(capacity);
+	}
+
+	public ChestMpscBounded() {
+		this(512);
+	}
+
+	static int roundToPowerOfTwo(final int value) {
+		if (value > (1 << 30))
+			throw new IllegalArgumentException("Invalid size: " + value);
+		return (1 << (32 - Integer.numberOfLeadingZeros(value - 1)));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (consumerIndex.get() >= producerIndex.get());
+	}
+
+	@Override
+	public T poll() {
+		final long index = consumerIndex.get();
+		final int offset = (int) (index & mask);
+		T value = buffer.get(offset);
+		if (value == null) {
+			if (index >= producerIndex.get())
+				return null;
+			// Slot claimed by producer but value not yet stored
+			while ((value = buffer.get(offset)) == null) {
+				Thread.yield();
+			}
+		}
+		buffer.lazySet(offset, null);
+		consumerIndex.lazySet(index + 1);
+		return value;
+	}
+
+	@Override
+	public boolean offer(final T value) {
+		if (value == null)
+			throw new NullPointerException();
+		long limit = producerLimit.get();
+		long index;
+		do {
+			index = producerIndex.get();
+			if (index >= limit) {
+				limit = consumerIndex.get() + buffer.length();
+				if (index >= limit)
+					return false; // Full
+				producerLimit.lazySet(limit);
+			}
+		} while (!producerIndex.compareAndSet(index, index + 1));
+		buffer.lazySet((int) (index & mask), value);
+		return true;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> sink, final int maxElements) {
+		final long index = consumerIndex.get();
+		final long available = Math.min(producerIndex.get() - index, maxElements);
+		int n = 0;
+		for (; n < available; n++) {
+			final int offset = (int) ((index + n) & mask);
+			T value;
+			while ((value = buffer.get(offset)) == null) {
+				// Slot claimed by producer but value not yet stored
+				Thread.yield();
+			}
+			buffer.lazySet(offset, null);
+			sink.add(value);
+		}
+		// Single release of the slots for the whole batch
+		consumerIndex.lazySet(index + n);
+		return n;
+	}
+
+	@Override
+	public int offerAll(final List<? extends T> values) {
+		final int size = values.size();
+		for (int i = 0; i < size; i++) {
+			if (values.get(i) == null)
+				throw new NullPointerException();
+		}
+		if (size == 0)
+			return 0;
+		long limit = producerLimit.get();
+		long index;
+		int claimed;
+		do {
+			index = producerIndex.get();
+			if ((limit - index) < size) {
+				limit = consumerIndex.get() + buffer.length();
+				if (index >= limit)
+					return 0; // Full
+				producerLimit.lazySet(limit);
+			}
+			claimed = (int) Math.min(size, limit - index);
+		} while (!producerIndex.compareAndSet(index, index + claimed));
+		for (int i = 0; i < claimed; i++) {
+			buffer.lazySet((int) ((index + i) & mask), values.get(i));
+		}
+		return claimed;
+	}
+
+	@Override
+	public int size() {
+		// Read consumer first, the difference never is negative
+		final long consumer = consumerIndex.get();
+		final long size = producerIndex.get() - consumer;
+		return (int) Math.min(size, buffer.length());
+	}
+}
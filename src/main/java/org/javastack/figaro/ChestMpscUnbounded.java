@@ -0,0 +1,184 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Memory container for messages (size unbounded), lock-free linked list of array chunks for
+ * multiple producers and a single consumer
+ * <p>
+ * Producers claim a slot with a single atomic increment and only allocate a new chunk every
+ * chunkSize messages. Only the TalkerContext (one thread at a time) can call {@link #poll()}.
+ */
+public class ChestMpscUnbounded<T extends Whisper<?>> implements Chest<T> {
+	private final int chunkSize;
+	private final PaddedAtomicLong producerIndex = new PaddedAtomicLong();
+	// Hint for producers, may lag behind the last chunk
+	private volatile Chunk<T> producerChunk;
+	private volatile Chunk<T> consumerChunk;
+	private final PaddedAtomicLong consumerIndex = new PaddedAtomicLong();
+
+	/**
+	 * Create chest
+	 * 
+	 * @param chunkSize number of messages in each chunk
+	 */
+	public ChestMpscUnbounded(final int chunkSize) {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Invalid chunkSize: " + chunkSize);
+		this.chunkSize = chunkSize;
+		final Chunk<T> first = new Chunk<T>(0, chunkSize);
+		this.producerChunk = first;
+		this.consumerChunk = first;
+	}
+
+	public ChestMpscUnbounded() {
+		this(256);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (consumerIndex.get() >= producerIndex.get());
+	}
+
+	@Override
+	public T poll() {
+		final long index = consumerIndex.get();
+		if (index >= producerIndex.get())
+			return null;
+		Chunk<T> chunk = consumerChunk;
+		int offset = (int) (index - chunk.base);
+		if (offset == chunkSize) {
+			// The producer that claimed index links the next chunk
+			Chunk<T> next;
+			while ((next = chunk.next) == null) {
+				Thread.yield();
+			}
+			consumerChunk = chunk = next;
+			offset = 0;
+		}
+		T value;
+		while ((value = chunk.slots.get(offset)) == null) {
+			// Slot claimed by producer but value not yet stored
+			Thread.yield();
+		}
+		chunk.slots.lazySet(offset, null);
+		consumerIndex.lazySet(index + 1);
+		return value;
+	}
+
+	@Override
+	public boolean offer(final T value) {
+		if (value == null)
+			throw new NullPointerException();
+		final long index = producerIndex.getAndIncrement();
+		Chunk<T> chunk = chunkFor(index);
+		while ((index - chunk.base) >= chunkSize) {
+			chunk = chunk.nextOrCreate(chunkSize);
+		}
+		chunk.slots.lazySet((int) (index - chunk.base), value);
+		advanceHint(chunk);
+		return true;
+	}
+
+	/**
+	 * Return a chunk at or before the claimed index
+	 */
+	private Chunk<T> chunkFor(final long index) {
+		final Chunk<T> chunk = producerChunk;
+		if (chunk.base > index) {
+			// Slow producer, the consumer can not pass an unfilled slot
+			return consumerChunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Advance hint (best effort, a race can leave it behind)
+	 */
+	private void advanceHint(final Chunk<T> chunk) {
+		if (producerChunk.base < chunk.base)
+			producerChunk = chunk;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> sink, final int maxElements) {
+		int n = 0;
+		T value;
+		while ((n < maxElements) && ((value = poll()) != null)) {
+			sink.add(value);
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public int offerAll(final List<? extends T> values) {
+		final int size = values.size();
+		for (int i = 0; i < size; i++) {
+			if (values.get(i) == null)
+				throw new NullPointerException();
+		}
+		if (size == 0)
+			return 0;
+		final long first = producerIndex.getAndAdd(size);
+		Chunk<T> chunk = chunkFor(first);
+		for (int i = 0; i < size; i++) {
+			final long index = first + i;
+			while ((index - chunk.base) >= chunkSize) {
+				chunk = chunk.nextOrCreate(chunkSize);
+			}
+			chunk.slots.lazySet((int) (index - chunk.base), values.get(i));
+		}
+		advanceHint(chunk);
+		return size;
+	}
+
+	@Override
+	public int size() {
+		final long consumer = consumerIndex.get();
+		final long size = producerIndex.get() - consumer;
+		return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+	}
+
+	private static final class Chunk<T> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT = AtomicReferenceFieldUpdater
+				.newUpdater(Chunk.class, Chunk.class, "next");
+		final long base;
+		final AtomicReferenceArray<T> slots;
+		volatile Chunk<T> next;
+
+		Chunk(final long base, final int size) {
+			this.base = base;
+			this.slots = new AtomicReferenceArray<T>(size);
+		}
+
+		@SuppressWarnings("unchecked")
+		Chunk<T> nextOrCreate(final int size) {
+			final Chunk<T> n = next;
+			if (n != null)
+				return n;
+			final Chunk<T> created = new Chunk<T>(base + size, size);
+			if (NEXT.compareAndSet(this, null, created))
+				return created;
+			return next;
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Persistent container for messages (size unbounded, multi producer, single consumer), messages
+ * are encoded with a {@link WhisperCodec} and appended to memory-mapped segment files, the read
+ * cursor is stored (in other mapped file) on each poll. After a restart, pending messages are
+ * resumed from the cursor.
+ * <p>
+ * Writes go to page cache without syscalls, survive a crash of JVM but not of OS, unless
+ * {@link #force()} is called. A message is consumed when polled (if handler fails it is not
+ * redelivered).
+ * <p>
+ * Record format: int length (last written) + data; length -1 marks end of segment.
+ */
+public class ChestPersistent implements Chest<Whisper<?>>, Closeable {
+	private static final Logger log = Logger.getLogger(ChestPersistent.class);
+	/**
+	 * Default size of each segment file
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String CURSOR_FILE = "cursor";
+	private static final int END = -1;
+	// Record header + end marker
+	private static final int OVERHEAD = 8;
+	//
+	private final File dir;
+	private final WhisperCodec codec;
+	private final int segmentSize;
+	private final Object writeLock = new Object();
+	// Guarded by writeLock
+	private int writeSeq;
+	private MappedByteBuffer writeBuf;
+	private boolean closed = false;
+	// Only accessed by consumer
+	private int readSeq;
+	private MappedByteBuffer readBuf;
+	private int readPos;
+	private final MappedByteBuffer cursor;
+	// Records written (by producers) and read (by consumer)
+	private volatile long writeCount = 0;
+	private volatile long readCount = 0;
+
+	/**
+	 * Open (or create) a persistent chest with default segment size
+	 * 
+	 * @param dir directory of files (only one chest per directory)
+	 * @param codec
+	 */
+	public ChestPersistent(final File dir, final WhisperCodec codec) {
+		this(dir, codec, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open (or create) a persistent chest
+	 * 
+	 * @param dir directory of files (only one chest per directory)
+	 * @param codec
+	 * @param segmentSize size of each file (max size of a message is segmentSize - 8)
+	 */
+	public ChestPersistent(final File dir, final WhisperCodec codec, final int segmentSize) {
+		if (codec == null)
+			throw new IllegalArgumentException("Invalid WhisperCodec");
+		if (segmentSize < 64)
+			throw new IllegalArgumentException("Invalid segmentSize: " + segmentSize);
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IllegalArgumentException("Invalid directory: " + dir);
+		this.dir = dir;
+		this.codec = codec;
+		this.segmentSize = segmentSize;
+		try {
+			this.cursor = map(new File(dir, CURSOR_FILE), 8);
+			recover();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open chest: " + dir, e);
+		}
+	}
+
+	/**
+	 * Locate cursor, delete consumed segments and count pending records (write position is the end
+	 * of last record)
+	 */
+	private void recover() throws IOException {
+		final long position = cursor.getLong(0);
+		int seq = (int) (position >>> 32);
+		int pos = (int) position;
+		if (!segmentFile(seq).exists()) {
+			seq = firstSegment(seq);
+			pos = 0;
+		}
+		final File[] files = dir.listFiles();
+		for (final File file : files) {
+			final int s = parseSegment(file);
+			if ((s >= 0) && (s < seq) && !file.delete())
+				log.warn("Unable to delete consumed segment: " + file);
+		}
+		readSeq = seq;
+		readBuf = map(segmentFile(seq), segmentSize);
+		readPos = pos;
+		// Scan pending records (writer has its own mapping, position is not shared)
+		MappedByteBuffer buf = map(segmentFile(seq), segmentSize);
+		long pending = 0;
+		for (;;) {
+			final int len = buf.getInt(pos);
+			if (len == END) {
+				seq++;
+				buf = map(segmentFile(seq), segmentSize);
+				pos = 0;
+				continue;
+			}
+			if ((len <= 0) || (pos + 4 + len > segmentSize - 4))
+				break;
+			pos += 4 + len;
+			pending++;
+		}
+		writeSeq = seq;
+		writeBuf = buf;
+		((Buffer) writeBuf).position(pos);
+		writeCount = pending;
+		if (log.isDebugEnabled())
+			log.debug("Opened chest: " + dir + " pending=" + pending);
+	}
+
+	private int firstSegment(final int from) {
+		int first = -1;
+		for (final File file : dir.listFiles()) {
+			final int s = parseSegment(file);
+			if ((s >= from) && ((first < 0) || (s < first)))
+				first = s;
+		}
+		return (first < 0 ? from : first);
+	}
+
+	private static int parseSegment(final File file) {
+		final String name = file.getName();
+		if (!name.endsWith(SEGMENT_SUFFIX))
+			return -1;
+		try {
+			return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private File segmentFile(final int seq) {
+		return new File(dir, String.format("%08x", seq) + SEGMENT_SUFFIX);
+	}
+
+	private static MappedByteBuffer map(final File file, final int size) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// Mapping remains valid after close of channel
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (readCount == writeCount);
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.min(writeCount - readCount, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public Whisper<?> poll() {
+		if (readCount == writeCount)
+			return null;
+		int len = readBuf.getInt(readPos);
+		if (len == END) {
+			nextReadSegment();
+			len = readBuf.getInt(readPos);
+		}
+		final byte[] data = new byte[len];
+		((Buffer) readBuf).position(readPos + 4);
+		readBuf.get(data);
+		readPos += 4 + len;
+		readCount = readCount + 1;
+		cursor.putLong(0, (((long) readSeq) << 32) | readPos);
+		return codec.decode(data);
+	}
+
+	private void nextReadSegment() {
+		final File consumed = segmentFile(readSeq);
+		try {
+			readBuf = map(segmentFile(readSeq + 1), segmentSize);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read segment: " + segmentFile(readSeq + 1), e);
+		}
+		readSeq++;
+		readPos = 0;
+		// Mapped files can not be deleted on some platforms (retried on next open)
+		if (!consumed.delete() && log.isDebugEnabled())
+			log.debug("Unable to delete consumed segment: " + consumed);
+	}
+
+	/**
+	 * Append message (the reference of chest is released, this chest keeps a copy)
+	 * 
+	 * @throws IllegalArgumentException if encoded message is empty or larger than segmentSize - 8
+	 * @throws IllegalStateException if chest is closed or segment can not be created
+	 */
+	@Override
+	public boolean offer(final Whisper<?> value) {
+		final byte[] data = codec.encode(value);
+		// Zero length marks the end of written data on recovery
+		if (data.length == 0)
+			throw new IllegalArgumentException("Empty record");
+		if (data.length > segmentSize - OVERHEAD)
+			throw new IllegalArgumentException("Message too large: " + data.length);
+		synchronized (writeLock) {
+			if (closed)
+				throw new IllegalStateException("Chest closed: " + dir);
+			if (writeBuf.remaining() < data.length + OVERHEAD)
+				nextWriteSegment();
+			final int pos = writeBuf.position();
+			((Buffer) writeBuf).position(pos + 4);
+			writeBuf.put(data);
+			// Length last, a partial record is never seen as valid
+			writeBuf.putInt(pos, data.length);
+			writeCount = writeCount + 1;
+		}
+		value.release();
+		return true;
+	}
+
+	private void nextWriteSegment() {
+		final int seq = writeSeq + 1;
+		final File file = segmentFile(seq);
+		final MappedByteBuffer buf;
+		try {
+			// Leftover of a crash before end marker
+			if (file.exists() && !file.delete())
+				throw new IOException("Unable to delete stale segment");
+			buf = map(file, segmentSize);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to create segment: " + file, e);
+		}
+		// Next segment exists before end marker is visible
+		writeBuf.putInt(writeBuf.position(), END);
+		writeBuf = buf;
+		writeSeq = seq;
+	}
+
+	@Override
+	public int offerAll(final List<? extends Whisper<?>> values) {
+		final int size = values.size();
+		int n = 0;
+		try {
+			while ((n < size) && offer(values.get(n)))
+				n++;
+		} catch (RuntimeException e) {
+			// Failed record is retried by caller (one by one)
+			if (n == 0)
+				throw e;
+		}
+		return n;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Whisper<?>> sink, final int maxElements) {
+		int n = 0;
+		Whisper<?> value;
+		while ((n < maxElements) && ((value = poll()) != null)) {
+			sink.add(value);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Force written records and cursor to storage device
+	 */
+	public void force() {
+		synchronized (writeLock) {
+			writeBuf.force();
+		}
+		cursor.force();
+	}
+
+	/**
+	 * Force to storage and reject new messages (pending messages can still be polled)
+	 */
+	@Override
+	public void close() {
+		synchronized (writeLock) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		force();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Empty chests of same TalkerType and capacity, shared by Talkers with lazy chest (the chest is
+ * taken on first message and returned when drained)
+ */
+final class ChestPool {
+	// Idle chests kept, the rest are left to GC
+	private static final int MAX_IDLE = 1024;
+	private final TalkerType type;
+	private final int capacity;
+	private final ConcurrentLinkedQueue<Leased> idle = new ConcurrentLinkedQueue<Leased>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	ChestPool(final TalkerType type, final int capacity) {
+		this.type = type;
+		this.capacity = capacity;
+	}
+
+	final Leased acquire() {
+		final Leased chest = idle.poll();
+		if (chest == null)
+			return new Leased(GossipMonger.createChest(type, capacity));
+		idleCount.decrementAndGet();
+		return chest;
+	}
+
+	/**
+	 * Return an empty chest to pool
+	 */
+	final void release(final Leased chest) {
+		if (idleCount.incrementAndGet() > MAX_IDLE) {
+			idleCount.decrementAndGet();
+			return;
+		}
+		idle.offer(chest);
+	}
+
+	/**
+	 * Chest of pool, counts the producers writing to it (the drain loop that detaches it waits only
+	 * for these, not for producers of the next chest)
+	 */
+	static final class Leased implements Chest<Whisper<?>> {
+		private static final AtomicIntegerFieldUpdater<Leased> WRITERS = //
+				AtomicIntegerFieldUpdater.newUpdater(Leased.class, "writers");
+		private final Chest<Whisper<?>> chest;
+		private volatile int writers = 0;
+
+		Leased(final Chest<Whisper<?>> chest) {
+			this.chest = chest;
+		}
+
+		final void enterWrite() {
+			WRITERS.incrementAndGet(this);
+		}
+
+		final void exitWrite() {
+			WRITERS.decrementAndGet(this);
+		}
+
+		final boolean hasWriters() {
+			return (writers != 0);
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return chest.isEmpty();
+		}
+
+		@Override
+		public int size() {
+			return chest.size();
+		}
+
+		@Override
+		public Whisper<?> poll() {
+			return chest.poll();
+		}
+
+		@Override
+		public boolean offer(final Whisper<?> value) {
+			return chest.offer(value);
+		}
+
+		@Override
+		public int offerAll(final List<? extends Whisper<?>> values) {
+			return chest.offerAll(values);
+		}
+
+		@Override
+		public int drainTo(final Collection<? super Whisper<?>> sink, final int maxElements) {
+			return chest.drainTo(sink, maxElements);
+		}
+	}
+}
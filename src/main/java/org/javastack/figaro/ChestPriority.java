@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Container for messages with priority lanes (size unbounded, multi producer, single consumer),
+ * each lane is a lock-free queue. A message goes to the lane of its {@link Whisper#priority}
+ * (clamped to 0..lanes-1) and poll always takes from the highest non-empty lane, so control
+ * messages are not queued behind bulk traffic. Order is kept inside each lane.
+ * 
+ * @see TalkerConfig#setChest(Chest)
+ */
+public class ChestPriority implements Chest<Whisper<?>> {
+	private final ChestMpscUnbounded<Whisper<?>>[] lanes;
+
+	/**
+	 * Create chest
+	 * 
+	 * @param lanes number of priorities (0 is lowest)
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ChestPriority(final int lanes) {
+		if (lanes < 1)
+			throw new IllegalArgumentException("Invalid lanes: " + lanes);
+		this.lanes = new ChestMpscUnbounded[lanes];
+		for (int i = 0; i < lanes; i++) {
+			this.lanes[i] = new ChestMpscUnbounded<Whisper<?>>();
+		}
+	}
+
+	private final ChestMpscUnbounded<Whisper<?>> laneOf(final Whisper<?> value) {
+		final int priority = value.getPriority();
+		return lanes[(priority < 0 ? 0 : (priority >= lanes.length ? lanes.length - 1 : priority))];
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (int i = lanes.length - 1; i >= 0; i--) {
+			if (!lanes[i].isEmpty())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			size += lanes[i].size();
+		}
+		return size;
+	}
+
+	@Override
+	public Whisper<?> poll() {
+		for (int i = lanes.length - 1; i >= 0; i--) {
+			final Whisper<?> value = lanes[i].poll();
+			if (value != null)
+				return value;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean offer(final Whisper<?> value) {
+		return laneOf(value).offer(value);
+	}
+
+	@Override
+	public int offerAll(final List<? extends Whisper<?>> values) {
+		final int size = values.size();
+		int n = 0;
+		while ((n < size) && offer(values.get(n)))
+			n++;
+		return n;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Whisper<?>> sink, final int maxElements) {
+		int n = 0;
+		for (int i = lanes.length - 1; (i >= 0) && (n < maxElements); i--) {
+			n += lanes[i].drainTo(sink, maxElements - n);
+		}
+		return n;
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Container for messages (size unbounded, multi producer, single consumer) with a bounded
+ * in-memory ring for the head, when ring is full (or messages are already spilled) messages are
+ * encoded with a {@link WhisperCodec} and appended to temporary file segments, and read back in
+ * order when consumer catches up. Heap usage is flat under backlog spikes, without dropping or
+ * blocking.
+ * <p>
+ * Record format: int length + data; length -1 marks end of segment.
+ */
+public class ChestSpill implements Chest<Whisper<?>>, Closeable {
+	private static final Logger log = Logger.getLogger(ChestSpill.class);
+	/**
+	 * Default size of each spill file
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final int END = -1;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	//
+	private final File dir;
+	private final WhisperCodec codec;
+	private final int segmentSize;
+	private final ChestMpscBounded<Whisper<?>> memory;
+	// Segments pending of read (head is read, tail is written)
+	private final ConcurrentLinkedQueue<Segment> segments = new ConcurrentLinkedQueue<Segment>();
+	private final Object writeLock = new Object();
+	// Guarded by writeLock
+	private Segment writeSegment = null;
+	private ByteBuffer writeBuf = ByteBuffer.allocate(1024);
+	private volatile boolean closed = false;
+	// Only accessed by consumer
+	private final ByteBuffer readBuf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private long readFilePos = 0;
+	// Records written to (by producers) and read from (by consumer) disk
+	private volatile long spilled = 0;
+	private volatile long unspilled = 0;
+
+	/**
+	 * Create chest with default segment size
+	 * 
+	 * @param dir directory of temporary files
+	 * @param codec
+	 * @param memoryCapacity messages in memory before spill to disk
+	 */
+	public ChestSpill(final File dir, final WhisperCodec codec, final int memoryCapacity) {
+		this(dir, codec, memoryCapacity, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Create chest
+	 * 
+	 * @param dir directory of temporary files
+	 * @param codec
+	 * @param memoryCapacity messages in memory before spill to disk
+	 * @param segmentSize size of each temporary file (approximate, a file holds at least one message)
+	 */
+	public ChestSpill(final File dir, final WhisperCodec codec, final int memoryCapacity,
+			final int segmentSize) {
+		if (codec == null)
+			throw new IllegalArgumentException("Invalid WhisperCodec");
+		if (segmentSize < 64)
+			throw new IllegalArgumentException("Invalid segmentSize: " + segmentSize);
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IllegalArgumentException("Invalid directory: " + dir);
+		this.dir = dir;
+		this.codec = codec;
+		this.segmentSize = segmentSize;
+		this.memory = new ChestMpscBounded<Whisper<?>>(memoryCapacity);
+		((Buffer) readBuf).flip();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return memory.isEmpty() && (closed || (unspilled == spilled));
+	}
+
+	@Override
+	public int size() {
+		final long disk = (closed ? 0 : (spilled - unspilled));
+		return (int) Math.min(memory.size() + disk, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public Whisper<?> poll() {
+		// Memory holds older messages than disk
+		final Whisper<?> value = memory.poll();
+		if (value != null)
+			return value;
+		if (closed || (unspilled == spilled))
+			return null;
+		return unspill();
+	}
+
+	/**
+	 * Append message to memory ring, or to disk if ring is full or disk has pending messages (order
+	 * is kept). A spilled message is released (disk keeps a copy).
+	 * 
+	 * @throws IllegalStateException if chest is closed or file can not be written
+	 */
+	@Override
+	public boolean offer(final Whisper<?> value) {
+		if (closed)
+			throw new IllegalStateException("Chest closed: " + dir);
+		// Lock-free while nothing is spilled, the lock only guards the disk state
+		if ((unspilled == spilled) && memory.offer(value))
+			return true;
+		synchronized (writeLock) {
+			if (closed)
+				throw new IllegalStateException("Chest closed: " + dir);
+			// Consumer may have caught up (disk empty and room in ring) while waiting
+			if ((unspilled == spilled) && memory.offer(value))
+				return true;
+			spill(codec.encode(value));
+		}
+		value.release();
+		return true;
+	}
+
+	private void spill(final byte[] data) {
+		try {
+			if ((writeSegment == null) || (writeSegment.size + 4 + data.length + 4 > segmentSize)) {
+				final Segment next = new Segment(File.createTempFile("figaro-spill-", ".seg", dir));
+				if (writeSegment != null)
+					write(writeSegment, null);
+				segments.add(next);
+				writeSegment = next;
+			}
+			write(writeSegment, data);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to spill to: " + dir, e);
+		}
+		spilled = spilled + 1;
+	}
+
+	/**
+	 * Append record (or end marker if data is null) to segment
+	 */
+	private void write(final Segment segment, final byte[] data) throws IOException {
+		final int len = (data == null ? 0 : data.length);
+		if (writeBuf.capacity() < 4 + len)
+			writeBuf = ByteBuffer.allocate(Integer.highestOneBit(4 + len) << 1);
+		((Buffer) writeBuf).clear();
+		writeBuf.putInt(data == null ? END : len);
+		if (data != null)
+			writeBuf.put(data);
+		((Buffer) writeBuf).flip();
+		while (writeBuf.hasRemaining()) {
+			segment.size += segment.channel.write(writeBuf, segment.size);
+		}
+	}
+
+	private Whisper<?> unspill() {
+		try {
+			Segment segment = segments.peek();
+			int len = readInt(segment);
+			if (len == END) {
+				segments.poll();
+				segment.delete();
+				segment = segments.peek();
+				readFilePos = 0;
+				((Buffer) readBuf).clear();
+				((Buffer) readBuf).flip();
+				len = readInt(segment);
+			}
+			final byte[] data = new byte[len];
+			int off = 0;
+			while (off < len) {
+				fill(segment, 1);
+				final int n = Math.min(len - off, readBuf.remaining());
+				readBuf.get(data, off, n);
+				off += n;
+			}
+			unspilled = unspilled + 1;
+			return codec.decode(data);
+		} catch (IOException e) {
+			// Segments deleted by a concurrent close
+			if (closed)
+				return null;
+			throw new IllegalStateException("Unable to read spill of: " + dir, e);
+		}
+	}
+
+	private int readInt(final Segment segment) throws IOException {
+		fill(segment, 4);
+		return readBuf.getInt();
+	}
+
+	/**
+	 * Read ahead from segment until buffer has at least min bytes (already written)
+	 */
+	private void fill(final Segment segment, final int min) throws IOException {
+		if (readBuf.remaining() >= min)
+			return;
+		readBuf.compact();
+		while (readBuf.position() < min) {
+			final int n = segment.channel.read(readBuf, readFilePos);
+			if (n <= 0)
+				throw new IOException("Unexpected end of spill file: " + segment.file);
+			readFilePos += n;
+		}
+		((Buffer) readBuf).flip();
+	}
+
+	@Override
+	public int offerAll(final List<? extends Whisper<?>> values) {
+		final int size = values.size();
+		int n = 0;
+		while ((n < size) && offer(values.get(n)))
+			n++;
+		return n;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super Whisper<?>> sink, final int maxElements) {
+		int n = 0;
+		Whisper<?> value;
+		while ((n < maxElements) && ((value = poll()) != null)) {
+			sink.add(value);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Reject new messages and delete temporary files (spilled messages are lost, messages in memory
+	 * can still be polled)
+	 */
+	@Override
+	public void close() {
+		synchronized (writeLock) {
+			if (closed)
+				return;
+			closed = true;
+			Segment segment;
+			while ((segment = segments.poll()) != null) {
+				segment.delete();
+			}
+			writeSegment = null;
+			unspilled = spilled;
+		}
+	}
+
+	/**
+	 * Temporary file (channel is shared by writer and reader, with positional access)
+	 */
+	private static final class Segment {
+		final File file;
+		final FileChannel channel;
+		// Bytes written (guarded by writeLock)
+		long size = 0;
+
+		Segment(final File file) throws IOException {
+			this.file = file;
+			this.channel = new RandomAccessFile(file, "rw").getChannel();
+		}
+
+		void delete() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.warn("Unable to close spill file: " + file + ": " + e);
+			}
+			if (!file.delete())
+				log.warn("Unable to delete spill file: " + file);
+		}
+	}
+}
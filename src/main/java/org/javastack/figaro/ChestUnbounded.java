@@ -14,6 +14,8 @@
  */
 package org.javastack.figaro;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -37,6 +39,26 @@ public class ChestUnbounded<T extends Whisper<?>> implements Chest<T> {
 		return chest.offer(value);
 	}
 
+	@Override
+	public int drainTo(final Collection<? super T> sink, final int maxElements) {
+		int n = 0;
+		T value;
+		while ((n < maxElements) && ((value = chest.poll()) != null)) {
+			sink.add(value);
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public int offerAll(final List<? extends T> values) {
+		final int size = values.size();
+		int n = 0;
+		while ((n < size) && chest.offer(values.get(n)))
+			n++;
+		return n;
+	}
+
 	@Override
 	public int size() {
 		return chest.size();
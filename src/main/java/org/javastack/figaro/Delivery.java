@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Outcome of send a message to a Talker
+ */
+public enum Delivery {
+	/**
+	 * Message processed (INPLACE) or queued (QUEUED)
+	 */
+	DELIVERED,
+	/**
+	 * Chest full, message dropped (OverflowPolicy.DROP_NEWEST)
+	 */
+	DROPPED,
+	/**
+	 * Chest full (OverflowPolicy.FAIL) or GossipMonger shutdown
+	 */
+	REJECTED,
+	/**
+	 * Chest full after wait (OverflowPolicy.BLOCK)
+	 */
+	TIMEOUT,
+	/**
+	 * Chest full, message passed to OverflowHandler (OverflowPolicy.HANDLER)
+	 */
+	OVERFLOWED
+}
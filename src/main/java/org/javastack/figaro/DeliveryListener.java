@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Receive the outcome of a sended message for each recipient
+ */
+public interface DeliveryListener {
+	/**
+	 * Called in sender Thread for each recipient of message
+	 * 
+	 * @param talker recipient
+	 * @param whisper
+	 * @param delivery outcome
+	 */
+	public void delivered(final Talker talker, final Whisper<?> whisper, final Delivery delivery);
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Precompiled type/destination, obtained from {@link GossipMonger#getDestination(String)} and
+ * reused for each message (avoid resolution of name)
+ * 
+ * @threadSafe
+ */
+public final class Destination {
+	final String name;
+	final int id;
+	final RouteTable routes;
+	final GossipMonger gossipMonger;
+	private volatile Route cached;
+
+	Destination(final String name, final int id, final RouteTable routes, final GossipMonger gossipMonger) {
+		this.name = name;
+		this.id = id;
+		this.routes = routes;
+		this.gossipMonger = gossipMonger;
+		this.cached = new Route(routes.version(), routes.get(id));
+	}
+
+	/**
+	 * Return name of destination
+	 * 
+	 * @return name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Return id of destination
+	 * 
+	 * @return id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Return recipients, cached until subscriptions change
+	 * 
+	 * @return recipients or null if none (do not modify)
+	 */
+	Talker[] recipients() {
+		Route route = cached;
+		final int version = routes.version();
+		if (route.version != version) {
+			route = new Route(version, routes.get(id));
+			cached = route;
+		}
+		return route.talkers;
+	}
+
+	@Override
+	public String toString() {
+		return name + "[" + id + "]";
+	}
+
+	private static final class Route {
+		final int version;
+		final Talker[] talkers;
+
+		Route(final int version, final Talker[] talkers) {
+			this.version = version;
+			this.talkers = talkers;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the processing of queued Talkers
+ */
+public interface Dispatcher {
+	/**
+	 * Execute the task in some thread of this dispatcher
+	 * 
+	 * @param task
+	 * @throws RejectedExecutionException if dispatcher is shutdown
+	 */
+	public void dispatch(final Runnable task);
+
+	/**
+	 * Return the maximum number of messages that a Talker process before yield the thread to others
+	 * 
+	 * @return throughput
+	 */
+	public int getThroughput();
+
+	/**
+	 * Disable new tasks from being dispatched
+	 */
+	public void shutdown();
+
+	/**
+	 * Cancel currently executing tasks
+	 */
+	public void shutdownNow();
+
+	/**
+	 * Wait for executing tasks to terminate after shutdown
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return true if terminated
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException;
+}
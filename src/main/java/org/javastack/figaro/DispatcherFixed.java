@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher with a fixed number of threads
+ * <p>
+ * The task queue is unbounded, but a Talker is never scheduled more times than its concurrency, so
+ * it never holds more tasks than queued Talkers (times concurrency).
+ */
+public class DispatcherFixed extends AbstractDispatcher {
+	/**
+	 * Create dispatcher with one thread per available processor
+	 */
+	public DispatcherFixed() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param threads number of threads
+	 */
+	public DispatcherFixed(final int threads) {
+		this(threads, "figaro-fixed-", false, DEFAULT_THROUGHPUT);
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param threads number of threads
+	 * @param namePrefix prefix for thread names
+	 * @param daemon create daemon threads
+	 * @param throughput messages processed by a Talker before yield the thread
+	 */
+	public DispatcherFixed(final int threads, final String namePrefix, final boolean daemon,
+			final int throughput) {
+		super(new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new DispatcherThreadFactory(namePrefix, daemon)),
+				throughput);
+	}
+}
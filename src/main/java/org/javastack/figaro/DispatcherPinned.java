@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher with a single dedicated thread, for latency-critical Talkers
+ * <p>
+ * Assign only few Talkers to this dispatcher, they are processed in sequence.
+ */
+public class DispatcherPinned extends AbstractDispatcher {
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param name name of the thread
+	 */
+	public DispatcherPinned(final String name) {
+		this(name, false, DEFAULT_THROUGHPUT);
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param name name of the thread
+	 * @param daemon create daemon thread
+	 * @param throughput messages processed by a Talker before yield the thread
+	 */
+	public DispatcherPinned(final String name, final boolean daemon, final int throughput) {
+		super(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DispatcherThreadFactory(name + "-", daemon)), throughput);
+		// Start the thread now, not on first message
+		((ThreadPoolExecutor) executor).prestartAllCoreThreads();
+	}
+}
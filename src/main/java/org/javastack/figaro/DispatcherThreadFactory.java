@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Create named threads for Dispatchers
+ */
+class DispatcherThreadFactory implements ThreadFactory {
+	private final AtomicInteger counter = new AtomicInteger();
+	private final String prefix;
+	private final boolean daemon;
+
+	DispatcherThreadFactory(final String prefix, final boolean daemon) {
+		this.prefix = prefix;
+		this.daemon = daemon;
+	}
+
+	String nextName() {
+		return prefix + counter.incrementAndGet();
+	}
+
+	@Override
+	public Thread newThread(final Runnable r) {
+		final Thread t = new Thread(r, nextName());
+		t.setDaemon(daemon);
+		return t;
+	}
+}
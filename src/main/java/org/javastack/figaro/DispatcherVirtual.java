@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Dispatcher that run each Talker in a new virtual thread (Java 21+), for Talkers that block
+ * inside newMessage
+ * <p>
+ * Virtual threads are resolved by reflection, check {@link #isSupported()} before create.
+ */
+public class DispatcherVirtual extends AbstractDispatcher {
+	private static final Logger log = Logger.getLogger(DispatcherVirtual.class);
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null, builderName = null, builderFactory = null, newExecutor = null;
+		try {
+			final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builder.getMethod("name", String.class, long.class);
+			builderFactory = builder.getMethod("factory");
+			newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			// Preview feature in Java 19/20 throws here if not enabled
+			ofVirtual.invoke(null);
+		} catch (Throwable t) {
+			if (log.isDebugEnabled())
+				log.debug("Virtual threads not supported: " + t.toString());
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @throws UnsupportedOperationException if virtual threads are not supported
+	 */
+	public DispatcherVirtual() {
+		this("figaro-virtual-", DEFAULT_THROUGHPUT);
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param namePrefix prefix for thread names
+	 * @param throughput messages processed by a Talker before yield the thread
+	 * @throws UnsupportedOperationException if virtual threads are not supported
+	 */
+	public DispatcherVirtual(final String namePrefix, final int throughput) {
+		super(newVirtualExecutor(namePrefix), throughput);
+	}
+
+	/**
+	 * Check if running JVM support virtual threads
+	 * 
+	 * @return true if supported
+	 */
+	public static boolean isSupported() {
+		return (OF_VIRTUAL != null);
+	}
+
+	private static ExecutorService newVirtualExecutor(final String namePrefix) {
+		if (!isSupported())
+			throw new UnsupportedOperationException("Virtual threads not supported");
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = BUILDER_NAME.invoke(builder, namePrefix, Long.valueOf(1));
+			final ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException("Virtual threads not supported", e);
+		}
+	}
+}
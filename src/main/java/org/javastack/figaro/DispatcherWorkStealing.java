@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Dispatcher backed by a work-stealing ForkJoinPool (FIFO mode)
+ */
+public class DispatcherWorkStealing extends AbstractDispatcher {
+	/**
+	 * Create dispatcher with parallelism equal to available processors
+	 */
+	public DispatcherWorkStealing() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param parallelism target number of active threads
+	 */
+	public DispatcherWorkStealing(final int parallelism) {
+		this(parallelism, "figaro-ws-", false, DEFAULT_THROUGHPUT);
+	}
+
+	/**
+	 * Create dispatcher
+	 * 
+	 * @param parallelism target number of active threads
+	 * @param namePrefix prefix for thread names
+	 * @param daemon create daemon threads
+	 * @param throughput messages processed by a Talker before yield the thread
+	 */
+	public DispatcherWorkStealing(final int parallelism, final String namePrefix, final boolean daemon,
+			final int throughput) {
+		super(new ForkJoinPool(parallelism, new NamedWorkerThreadFactory(namePrefix, daemon), null, true),
+				throughput);
+	}
+
+	private static class NamedWorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+		private final DispatcherThreadFactory names;
+		private final boolean daemon;
+
+		NamedWorkerThreadFactory(final String prefix, final boolean daemon) {
+			this.names = new DispatcherThreadFactory(prefix, daemon);
+			this.daemon = daemon;
+		}
+
+		@Override
+		public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+			final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			t.setName(names.nextName());
+			t.setDaemon(daemon);
+			return t;
+		}
+	}
+}
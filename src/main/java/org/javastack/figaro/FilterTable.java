@@ -0,0 +1,196 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Filtered subscriptions (and talker groups) of each type/destination, indexed by id (like
+ * {@link RouteTable})
+ * <p>
+ * Predicates are evaluated one by one, equality filters are grouped by {@link WhisperKey} in a
+ * hash index (one lookup for all subscribers of the same key), each group selects one member.
+ * Copy-on-write: readers get an immutable snapshot.
+ */
+class FilterTable {
+	private volatile Filters[] filters = new Filters[64];
+
+	/**
+	 * Return filters of a type/destination
+	 * 
+	 * @param id
+	 * @return filters or null if none
+	 */
+	Filters get(final int id) {
+		final Filters[] snapshot = filters;
+		return (((id > 0) && (id < snapshot.length)) ? snapshot[id] : null);
+	}
+
+	synchronized void add(final int id, final Subscription subscription) {
+		if ((id <= GossipType.NULL) || (id == GossipType.BROADCAST))
+			throw new IllegalArgumentException("Invalid id: " + id);
+		final Filters[] snapshot = filters;
+		final Filters old = (id < snapshot.length ? snapshot[id] : null);
+		final Subscription[] subs = (old == null ? new Subscription[0] : old.subscriptions);
+		final Subscription[] next = Arrays.copyOf(subs, subs.length + 1);
+		next[subs.length] = subscription;
+		int len = snapshot.length;
+		while (len <= id) {
+			len <<= 1;
+		}
+		final Filters[] table = Arrays.copyOf(snapshot, len);
+		table[id] = new Filters(next);
+		filters = table;
+	}
+
+	/**
+	 * Remove filtered subscriptions of talker (or group) in a type/destination
+	 * 
+	 * @return true if some subscription was removed
+	 */
+	synchronized boolean remove(final int id, final Object subscriber) {
+		final Filters[] snapshot = filters;
+		if ((id <= GossipType.NULL) || (id >= snapshot.length) || (snapshot[id] == null))
+			return false;
+		final Subscription[] subs = snapshot[id].subscriptions;
+		final Subscription[] next = new Subscription[subs.length];
+		int n = 0;
+		for (final Subscription s : subs) {
+			if ((s.talker != subscriber) && (s.group != subscriber))
+				next[n++] = s;
+		}
+		if (n == subs.length)
+			return false;
+		final Filters[] table = snapshot.clone();
+		table[id] = (n == 0 ? null : new Filters(Arrays.copyOf(next, n)));
+		filters = table;
+		return true;
+	}
+
+	/**
+	 * Subscription with a predicate (filter), equality (key + value) or a group
+	 */
+	static final class Subscription {
+		final Talker talker;
+		final WhisperFilter filter;
+		final WhisperKey key;
+		final Object value;
+		final TalkerGroup group;
+
+		Subscription(final Talker talker, final WhisperFilter filter) {
+			if (filter == null)
+				throw new IllegalArgumentException("Invalid WhisperFilter");
+			this.talker = talker;
+			this.filter = filter;
+			this.key = null;
+			this.value = null;
+			this.group = null;
+		}
+
+		Subscription(final Talker talker, final WhisperKey key, final Object value) {
+			if ((key == null) || (value == null))
+				throw new IllegalArgumentException("Invalid WhisperKey/value");
+			this.talker = talker;
+			this.filter = null;
+			this.key = key;
+			this.value = value;
+			this.group = null;
+		}
+
+		Subscription(final TalkerGroup group) {
+			this.talker = null;
+			this.filter = null;
+			this.key = null;
+			this.value = null;
+			this.group = group;
+		}
+	}
+
+	/**
+	 * Compiled (immutable) filters of a type/destination
+	 */
+	static final class Filters {
+		final Subscription[] subscriptions;
+		// Predicates, in parallel arrays
+		final Talker[] talkers;
+		final WhisperFilter[] predicates;
+		// Equality indexes, one per WhisperKey
+		final WhisperKey[] keys;
+		final Map<Object, Talker[]>[] indexes;
+		final TalkerGroup[] groups;
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Filters(final Subscription[] subscriptions) {
+			this.subscriptions = subscriptions;
+			int count = 0, groupCount = 0;
+			final Map<WhisperKey, Map<Object, Talker[]>> byKey = //
+					new LinkedHashMap<WhisperKey, Map<Object, Talker[]>>();
+			for (final Subscription s : subscriptions) {
+				if (s.filter != null) {
+					count++;
+					continue;
+				}
+				if (s.group != null) {
+					groupCount++;
+					continue;
+				}
+				Map<Object, Talker[]> index = byKey.get(s.key);
+				if (index == null) {
+					index = new HashMap<Object, Talker[]>();
+					byKey.put(s.key, index);
+				}
+				final Talker[] set = index.get(s.value);
+				index.put(s.value, (set == null ? new Talker[] {
+					s.talker
+				} : append(set, s.talker)));
+			}
+			talkers = new Talker[count];
+			predicates = new WhisperFilter[count];
+			groups = new TalkerGroup[groupCount];
+			int i = 0, g = 0;
+			for (final Subscription s : subscriptions) {
+				if (s.filter != null) {
+					talkers[i] = s.talker;
+					predicates[i] = s.filter;
+					i++;
+				} else if (s.group != null) {
+					groups[g++] = s.group;
+				}
+			}
+			keys = new WhisperKey[byKey.size()];
+			indexes = new Map[byKey.size()];
+			i = 0;
+			for (final Entry<WhisperKey, Map<Object, Talker[]>> e : byKey.entrySet()) {
+				keys[i] = e.getKey();
+				indexes[i] = e.getValue();
+				i++;
+			}
+		}
+
+		private static Talker[] append(final Talker[] set, final Talker talker) {
+			for (final Talker t : set) {
+				if (t == talker)
+					return set;
+			}
+			final Talker[] next = Arrays.copyOf(set, set.length + 1);
+			next[set.length] = talker;
+			return next;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Flat combining for TalkerType.INPLACE_COMBINING: a sender that finds the Talker busy publishes
+ * its message in a slot and waits; the thread holding the lock handles the published messages of
+ * the others before releasing it, so senders do not convoy on a monitor. Handling is serialized
+ * and synchronous (a send returns after its message is handled, exceptions are rethrown to the
+ * sender).
+ */
+final class FlatCombiner {
+	// Spins before yield while waiting
+	private static final int SPINS = 64;
+	// Scans of slots by a combiner before releasing lock
+	private static final int PASSES = 4;
+	private static final int SLOTS = slots();
+	private static final AtomicIntegerFieldUpdater<FlatCombiner> LOCKED = //
+			AtomicIntegerFieldUpdater.newUpdater(FlatCombiner.class, "locked");
+	private static final AtomicIntegerFieldUpdater<FlatCombiner> PUBLISHED = //
+			AtomicIntegerFieldUpdater.newUpdater(FlatCombiner.class, "published");
+	/**
+	 * Request of current thread, reused while it is not waiting. A waiting thread may combine for
+	 * other senders and a handler may send in-place to another combining Talker (other
+	 * GossipMonger), that nested send gets its own request
+	 */
+	private static final ThreadLocal<Request> requests = new ThreadLocal<Request>() {
+		@Override
+		protected Request initialValue() {
+			return new Request();
+		}
+	};
+	private final TalkerContext ctx;
+	private final AtomicReferenceArray<Request> slots = new AtomicReferenceArray<Request>(SLOTS);
+	private volatile int locked = 0;
+	// Requests in slots, an uncontended combiner skips the scan
+	private volatile int published = 0;
+
+	FlatCombiner(final TalkerContext ctx) {
+		this.ctx = ctx;
+	}
+
+	private static int slots() {
+		final int n = Math.min(Runtime.getRuntime().availableProcessors() * 2, 64);
+		return Integer.highestOneBit(Math.max(n, 2) - 1) << 1;
+	}
+
+	final void handle(final Whisper<?> whisper) {
+		if (tryLock()) {
+			try {
+				ctx.handleInplace(whisper);
+			} finally {
+				combineAndUnlock();
+			}
+			return;
+		}
+		Request request = requests.get();
+		if (request.whisper != null) {
+			// Nested: own request is still published or waiting
+			request = new Request();
+		}
+		request.whisper = whisper;
+		request.error = null;
+		request.done = false;
+		publish(request);
+		int spins = 0;
+		while (!request.done) {
+			if (tryLock()) {
+				combineAndUnlock();
+			} else if (++spins > SPINS) {
+				Thread.yield();
+			}
+		}
+		request.whisper = null;
+		final Throwable error = request.error;
+		if (error != null) {
+			request.error = null;
+			rethrow(error);
+		}
+	}
+
+	/**
+	 * Put request in a free slot (starting by the slot of thread), if all are busy, help to combine
+	 */
+	private final void publish(final Request request) {
+		final int mask = (SLOTS - 1);
+		int i = ((int) Thread.currentThread().getId() & mask);
+		int spins = 0;
+		for (;;) {
+			if ((slots.get(i) == null) && slots.compareAndSet(i, null, request)) {
+				PUBLISHED.incrementAndGet(this);
+				return;
+			}
+			i = ((i + 1) & mask);
+			if (tryLock()) {
+				combineAndUnlock();
+			} else if (++spins > SPINS) {
+				Thread.yield();
+			}
+		}
+	}
+
+	private final boolean tryLock() {
+		return ((locked == 0) && LOCKED.compareAndSet(this, 0, 1));
+	}
+
+	/**
+	 * Handle published requests (a few passes while there are new ones) and release lock
+	 */
+	private final void combineAndUnlock() {
+		try {
+			for (int pass = 0; (pass < PASSES) && (published > 0); pass++) {
+				boolean found = false;
+				for (int i = 0; i < SLOTS; i++) {
+					final Request request = slots.get(i);
+					if (request == null)
+						continue;
+					// Free slot before done, the owner may publish again after done
+					slots.set(i, null);
+					PUBLISHED.decrementAndGet(this);
+					found = true;
+					try {
+						ctx.handleInplace(request.whisper);
+					} catch (Throwable t) {
+						request.error = t;
+					} finally {
+						request.done = true;
+					}
+				}
+				if (!found)
+					break;
+			}
+		} finally {
+			locked = 0;
+		}
+	}
+
+	private static void rethrow(final Throwable t) {
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		throw new RuntimeException(t);
+	}
+
+	private static final class Request {
+		Whisper<?> whisper;
+		Throwable error;
+		volatile boolean done;
+	}
+}
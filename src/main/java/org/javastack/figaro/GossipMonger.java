@@ -14,36 +14,95 @@
  */
 package org.javastack.figaro;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.log4j.Logger;
 
 /**
  * GossipMonger is the manager of all Whispers and Talkers
  */
-public class GossipMonger implements Runnable {
+public class GossipMonger {
 	private static final Logger log = Logger.getLogger(GossipMonger.class);
-	private static GossipMonger singleton = null;
-	private final ExecutorService threadPool = Executors.newCachedThreadPool();
+	private static volatile GossipMonger singleton = null;
+	private static final String JMX_DOMAIN = "org.javastack.figaro";
+	private static final int DEFAULT_LATENCY_SAMPLING = 1024;
+	// Value of listening talkers without MBean
+	private static final Object NO_MBEAN = new Object();
+	private static final AtomicInteger instances = new AtomicInteger();
+	// JMX key of explicit instances (null for default instance)
+	private final String instanceName;
+	private final Dispatcher dispatcher;
+	private final Dispatcher virtualDispatcher;
 	private final GossipType types = new GossipType();
-	private final ConcurrentHashMap<Integer, Set<Talker>> map = new ConcurrentHashMap<Integer, Set<Talker>>();
-	private final Set<Talker> listenerQueuedTalkers = new CopyOnWriteArraySet<Talker>();
+	private final RouteTable routes = new RouteTable();
+	private final FilterTable filters = new FilterTable();
+	// Wildcard subscriptions (guarded by itself), also guard registration of new names
+	private final TopicTrie topics = new TopicTrie();
+	private volatile boolean hasPatterns = false;
 	private final AtomicBoolean isShutdown = new AtomicBoolean();
-	private final ThreadLocal<ArrayDeque<Whisper<?>>> ref = new ThreadLocal<ArrayDeque<Whisper<?>>>() {
+	// Listening talkers (with its MBean name if registered in JMX)
+	private final ConcurrentHashMap<TalkerContext, Object> listening = //
+			new ConcurrentHashMap<TalkerContext, Object>();
+	// Shared by Talkers with lazy chest, by TalkerType and capacity
+	private final ConcurrentHashMap<String, ChestPool> chestPools = //
+			new ConcurrentHashMap<String, ChestPool>();
+	private boolean jmxEnabled = false;
+	// Mask of sampled sends for latency metrics (-1 = disabled)
+	private volatile int samplingMask = DEFAULT_LATENCY_SAMPLING - 1;
+	private final ThreadLocal<LocalQueue> ref = new ThreadLocal<LocalQueue>() {
 		@Override
-		protected ArrayDeque<Whisper<?>> initialValue() {
-			return new ArrayDeque<Whisper<?>>();
+		protected LocalQueue initialValue() {
+			return new LocalQueue();
 		}
 	};
 
-	private GossipMonger() {
-		threadPool.submit(this);
+	/**
+	 * Create an independent instance (own routing table, dispatcher and lifecycle) with a
+	 * {@link DispatcherFixed}
+	 * 
+	 * @see #GossipMonger(Dispatcher)
+	 */
+	public GossipMonger() {
+		this(new DispatcherFixed());
+	}
+
+	/**
+	 * Create an independent instance (own routing table, dispatcher and lifecycle), Talkers are
+	 * bound to it on creation (see {@link AbstractTalker#AbstractTalker(GossipMonger, String, TalkerType)}
+	 * ). The dispatcher is shutdown with this GossipMonger.
+	 * 
+	 * @param dispatcher used for Talkers without its own dispatcher
+	 */
+	public GossipMonger(final Dispatcher dispatcher) {
+		this(dispatcher, "monger-" + instances.incrementAndGet());
+	}
+
+	private GossipMonger(final Dispatcher dispatcher, final String instanceName) {
+		if (dispatcher == null)
+			throw new IllegalArgumentException("Invalid Dispatcher");
+		this.instanceName = instanceName;
+		this.dispatcher = dispatcher;
+		this.virtualDispatcher = (DispatcherVirtual.isSupported() ? new DispatcherVirtual() : dispatcher);
 	}
 
 	/**
@@ -52,24 +111,123 @@ public class GossipMonger implements Runnable {
 	 * @return instance
 	 */
 	public static GossipMonger getDefaultInstance() {
-		createInstance();
-		return singleton;
+		final GossipMonger instance = singleton;
+		if (instance != null)
+			return instance;
+		return createInstance();
 	}
 
-	private static synchronized void createInstance() {
+	private static synchronized GossipMonger createInstance() {
 		if (singleton == null) {
-			singleton = new GossipMonger();
+			singleton = new GossipMonger(new DispatcherFixed(), null);
 		}
+		return singleton;
+	}
+
+	/**
+	 * Create default instance with the specified dispatcher (must be called before any other use of
+	 * default instance). The dispatcher is shutdown with this GossipMonger.
+	 * 
+	 * @param dispatcher used for Talkers without its own dispatcher
+	 * @return instance
+	 * @throws IllegalStateException if default instance is already created
+	 */
+	public static synchronized GossipMonger initDefaultInstance(final Dispatcher dispatcher) {
+		if (singleton != null)
+			throw new IllegalStateException("Default instance already created");
+		singleton = new GossipMonger(dispatcher, null);
+		return singleton;
+	}
+
+	/**
+	 * Return the default dispatcher of this GossipMonger
+	 * 
+	 * @return dispatcher
+	 */
+	public Dispatcher getDispatcher() {
+		return dispatcher;
 	}
 
-	TalkerContext initTalker(final String name, final TalkerType type, final Talker talker) {
+	TalkerContext initTalker(final String name, final TalkerType type, final TalkerConfig config,
+			final Talker talker) {
 		final String tname = (name == null ? genRandomName(talker) : name);
-		final Chest<Whisper<?>> chest = createChest(type);
-		return new TalkerContext(tname, type, this, chest, talker);
+		if ((config.overflowPolicy == OverflowPolicy.DROP_OLDEST) && (type == TalkerType.QUEUED_MPSC_BOUNDED))
+			throw new IllegalArgumentException("OverflowPolicy DROP_OLDEST not supported by " + type);
+		if ((config.overflowPolicy == OverflowPolicy.HANDLER) && (config.overflowHandler == null))
+			throw new IllegalArgumentException("OverflowPolicy HANDLER without OverflowHandler");
+		if ((config.chest != null) && isInplace(type))
+			throw new IllegalArgumentException("Custom Chest not supported by " + type);
+		if ((config.concurrency > 1) && ((config.chest != null) || !isMultiConsumer(type)))
+			throw new IllegalArgumentException("Concurrency not supported by " + type);
+		// Only one parked drain loop can be woken up
+		if ((config.concurrency > 1) && (config.idleStrategy == IdleStrategy.PARK))
+			throw new IllegalArgumentException("IdleStrategy PARK not supported with concurrency");
+		if (config.lazyChest && ((config.chest != null) || (config.concurrency > 1) || isInplace(type)))
+			throw new IllegalArgumentException("Lazy Chest not supported by " + type);
+		final ChestPool chestPool = (config.lazyChest ? getChestPool(type, config.capacity) : null);
+		final Chest<Whisper<?>> chest = (config.chest != null ? config.chest : //
+				(chestPool != null ? null : createChest(type, config.capacity)));
+		return new TalkerContext(tname, type, this, selectDispatcher(type, config.dispatcher), chest,
+				chestPool, talker, config);
+	}
+
+	private static boolean isInplace(final TalkerType type) {
+		return ((type == TalkerType.INPLACE_UNSYNC) || (type == TalkerType.INPLACE_SYNC)
+				|| (type == TalkerType.INPLACE_COMBINING));
+	}
+
+	/**
+	 * Check if default chest of type supports concurrent consumers
+	 */
+	private static boolean isMultiConsumer(final TalkerType type) {
+		return ((type == TalkerType.QUEUED_UNBOUNDED) || (type == TalkerType.QUEUED_BOUNDED)
+				|| (type == TalkerType.QUEUED_VIRTUAL));
 	}
 
-	Integer getTypeIdByName(final String type) {
-		return types.getIdByName(type);
+	private Dispatcher selectDispatcher(final TalkerType type, final Dispatcher dispatcher) {
+		if (dispatcher != null)
+			return dispatcher;
+		return ((type == TalkerType.QUEUED_VIRTUAL) ? virtualDispatcher : this.dispatcher);
+	}
+
+	int getTypeIdByName(final String type) {
+		final int id = types.getIdByName(type);
+		if ((id != GossipType.NULL) || !hasPatterns)
+			return id;
+		// Unknown topic, registered only if some pattern match
+		synchronized (topics) {
+			if (topics.match(type).isEmpty())
+				return GossipType.NULL;
+		}
+		return registerName(type);
+	}
+
+	/**
+	 * Register name, a new name is added to recipients of matching patterns
+	 */
+	private int registerName(final String type) {
+		final int id = types.getIdByName(type);
+		if (id != GossipType.NULL)
+			return id;
+		synchronized (topics) {
+			final int newid = types.registerName(type);
+			topics.addName(type);
+			for (final Talker talker : topics.match(type)) {
+				addRoute(newid, talker, false);
+			}
+			return newid;
+		}
+	}
+
+	/**
+	 * Return a precompiled destination for the type/name (registered if not exist), to create
+	 * messages without resolve the name each time
+	 * 
+	 * @param type
+	 * @return destination
+	 */
+	public Destination getDestination(final String type) {
+		return new Destination(type, registerName(type), routes, this);
 	}
 
 	void registerListenerTalker(final Talker talker) {
@@ -77,127 +235,584 @@ public class GossipMonger implements Runnable {
 		registerListenerTalker(GossipType.BROADCAST, talker);
 	}
 
+	/**
+	 * Unregister all subscriptions of talker (only its own entries are touched)
+	 */
 	void unregisterListenerTalker(final Talker talker) {
-		for (final Integer id : map.keySet()) {
-			unregisterListenerTalker(id, talker);
+		final TalkerContext ctx = talker.getState();
+		synchronized (topics) {
+			if (ctx.patterns != null) {
+				for (final String pattern : ctx.patterns) {
+					topics.remove(pattern, talker);
+				}
+				hasPatterns = !topics.isEmpty();
+				ctx.patterns = null;
+			}
+		}
+		final int[] routeIds, filterIds;
+		synchronized (ctx) {
+			routeIds = (ctx.routeIds == null ? null : ctx.routeIds.toArray());
+			filterIds = (ctx.filterIds == null ? null : ctx.filterIds.toArray());
+		}
+		if (routeIds != null) {
+			for (final int id : routeIds) {
+				removeRoute(id, talker);
+			}
+		}
+		if (filterIds != null) {
+			for (final int id : filterIds) {
+				filters.remove(id, talker);
+				ctx.unfiltered(id);
+			}
 		}
+		removeListening(ctx);
 	}
 
 	void registerListenerTalker(final String type, final Talker talker) {
-		final Integer id = types.registerName(type);
+		if (TopicTrie.isPattern(type)) {
+			registerPattern(type, talker);
+			return;
+		}
+		final int id = registerName(type);
 		registerListenerTalker(id, talker);
 	}
 
-	void registerListenerTalker(final Integer id, final Talker talker) {
-		final Set<Talker> newSet = new CopyOnWriteArraySet<Talker>();
-		final Set<Talker> set = map.putIfAbsent(id, newSet);
-		((set == null) ? newSet : set).add(talker);
-		switch (talker.getState().type) {
-		case QUEUED_UNBOUNDED:
-		case QUEUED_BOUNDED:
-			listenerQueuedTalkers.add(talker);
-			break;
+	/**
+	 * Subscribe to all topics (existing and future) matched by pattern
+	 */
+	private void registerPattern(final String pattern, final Talker talker) {
+		synchronized (topics) {
+			if (!topics.add(pattern, talker))
+				return;
+			hasPatterns = true;
+			final TalkerContext ctx = talker.getState();
+			if (ctx.patterns == null)
+				ctx.patterns = new ArrayList<String>(2);
+			ctx.patterns.add(pattern);
+			topics.indexNames(types.getNames().keySet());
+			for (final String name : topics.matchNames(pattern)) {
+				final int id = types.getIdByName(name);
+				if (!isReserved(id))
+					addRoute(id, talker, false);
+			}
+		}
+		if (log.isDebugEnabled())
+			log.debug("Registered pattern: " + pattern + " talker: " + talker);
+	}
+
+	/**
+	 * Unsubscribe from topics matched by pattern (and not matched by other pattern of the talker or
+	 * subscribed by name)
+	 */
+	private void unregisterPattern(final String pattern, final Talker talker) {
+		synchronized (topics) {
+			if (!topics.remove(pattern, talker))
+				return;
+			hasPatterns = !topics.isEmpty();
+			final TalkerContext ctx = talker.getState();
+			ctx.patterns.remove(pattern);
+			if (ctx.patterns.isEmpty())
+				ctx.patterns = null;
+			for (final String name : topics.matchNames(pattern)) {
+				final int id = types.getIdByName(name);
+				if (!isReserved(id) && !ctx.isExact(id) && !topics.match(name).contains(talker))
+					removeRoute(id, talker);
+			}
+		}
+	}
+
+	private static boolean isReserved(final int id) {
+		return ((id == GossipType.NULL) || (id == GossipType.BROADCAST));
+	}
+
+	void registerListenerTalker(final int id, final Talker talker) {
+		addRoute(id, talker, true);
+	}
+
+	/**
+	 * Add route, by name (exact) or by a pattern
+	 */
+	private void addRoute(final int id, final Talker talker, final boolean exact) {
+		final TalkerContext ctx = talker.getState();
+		synchronized (ctx) {
+			routes.add(id, talker);
+			ctx.subscribed(id, exact);
 		}
 		if (log.isDebugEnabled())
 			log.debug("Registered type: " + id + " talker: " + talker);
+		registered(talker);
+	}
+
+	/**
+	 * Subscribe with a filter, messages not accepted are not queued
+	 */
+	void registerFilterTalker(final String type, final FilterTable.Subscription subscription) {
+		if (TopicTrie.isPattern(type))
+			throw new IllegalArgumentException("Filter not supported in pattern: " + type);
+		final int id = registerName(type);
+		final TalkerContext ctx = subscription.talker.getState();
+		synchronized (ctx) {
+			filters.add(id, subscription);
+			ctx.filtered(id);
+		}
+		if (log.isDebugEnabled())
+			log.debug("Registered filter type: " + type + " talker: " + subscription.talker);
+		registered(subscription.talker);
+	}
+
+	void registerGroup(final String type, final TalkerGroup group) {
+		if (TopicTrie.isPattern(type))
+			throw new IllegalArgumentException("Group not supported in pattern: " + type);
+		filters.add(registerName(type), new FilterTable.Subscription(group));
+		if (log.isDebugEnabled())
+			log.debug("Registered group: " + group);
+	}
+
+	void unregisterGroup(final String type, final TalkerGroup group) {
+		if (filters.remove(types.getIdByName(type), group)) {
+			if (log.isDebugEnabled())
+				log.debug("Unregistered group: " + group);
+		}
+	}
+
+	void unregisterFilterTalker(final String type, final Talker talker) {
+		final int id = types.getIdByName(type);
+		final TalkerContext ctx = talker.getState();
+		final boolean removed;
+		synchronized (ctx) {
+			removed = filters.remove(id, talker);
+			ctx.unfiltered(id);
+		}
+		if (removed) {
+			if (log.isDebugEnabled())
+				log.debug("Unregistered filter type: " + type + " talker: " + talker);
+		}
+	}
+
+	/**
+	 * Talker is a recipient (subscribed or member of a group): metrics, JMX and resume of pending
+	 */
+	void registered(final Talker talker) {
+		final TalkerContext ctx = talker.getState();
+		addListening(ctx);
+		// Resume pending messages (persistent chest)
+		if (!ctx.isEmpty())
+			ctx.schedule();
 	}
 
 	void unregisterListenerTalker(final String type, final Talker talker) {
-		final Integer id = types.getIdByName(type);
-		unregisterListenerTalker(id, talker);
+		if (TopicTrie.isPattern(type)) {
+			unregisterPattern(type, talker);
+			return;
+		}
+		final int id = types.getIdByName(type);
+		final TalkerContext ctx = talker.getState();
+		synchronized (topics) {
+			// Still routed while a pattern of the talker match the name
+			if (!isReserved(id) && (ctx.patterns != null) && topics.match(type).contains(talker)) {
+				ctx.unsubscribedExact(id);
+				return;
+			}
+			removeRoute(id, talker);
+		}
 	}
 
-	void unregisterListenerTalker(final Integer id, final Talker talker) {
-		try {
-			// TODO: Unregister from listenerQueuedTalkers
-			if (map.get(id).remove(talker)) {
-				if (log.isDebugEnabled())
-					log.debug("Unregistered type: " + id + " talker: " + talker);
+	private void removeRoute(final int id, final Talker talker) {
+		final TalkerContext ctx = talker.getState();
+		final boolean removed;
+		synchronized (ctx) {
+			removed = routes.remove(id, talker);
+			ctx.unsubscribed(id);
+		}
+		if (removed) {
+			if (log.isDebugEnabled())
+				log.debug("Unregistered type: " + id + " talker: " + talker);
+		}
+	}
+
+	/**
+	 * Return the metrics of a Talker
+	 * 
+	 * @param talker
+	 * @return metrics
+	 */
+	public TalkerMetrics getMetrics(final Talker talker) {
+		return talker.getState().metrics;
+	}
+
+	/**
+	 * Return the metrics of all listening Talkers
+	 * 
+	 * @return metrics
+	 */
+	public List<TalkerMetrics> getMetrics() {
+		final List<TalkerMetrics> metrics = new ArrayList<TalkerMetrics>();
+		for (final TalkerContext ctx : listening.keySet()) {
+			metrics.add(ctx.metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Set sampling of latency metrics, one of each rate messages sent by a thread is timed
+	 * (default 1024)
+	 * 
+	 * @param rate rounded up to power of two, 0 to disable
+	 */
+	public void setLatencySampling(final int rate) {
+		if (rate < 0)
+			throw new IllegalArgumentException("Invalid sampling rate");
+		samplingMask = (rate == 0 ? -1 : (rate == 1 ? 0 : (Integer.highestOneBit(rate - 1) << 1) - 1));
+	}
+
+	/**
+	 * Register (or unregister) the metrics of listening Talkers as MBeans
+	 * (org.javastack.figaro:type=Talker,name=..., plus monger=... key in explicit instances)
+	 * 
+	 * @param enabled
+	 */
+	public void setJmxEnabled(final boolean enabled) {
+		synchronized (listening) {
+			jmxEnabled = enabled;
+			for (final TalkerContext ctx : listening.keySet()) {
+				if (enabled) {
+					addListening(ctx);
+				} else {
+					// Replace in place (remove and put while iterating could revisit the entry)
+					unregisterMBean(ctx, listening.replace(ctx, NO_MBEAN));
+				}
+			}
+		}
+	}
+
+	private void addListening(final TalkerContext ctx) {
+		final Object mbean = listening.get(ctx);
+		if ((mbean != null) && ((mbean != NO_MBEAN) || !jmxEnabled))
+			return;
+		synchronized (listening) {
+			if (!jmxEnabled) {
+				listening.putIfAbsent(ctx, NO_MBEAN);
+				return;
 			}
-		} catch (Exception e) {
-			log.error("Error Unregistered type: " + id + " talker: " + talker + " exception:" + e.toString(),
-					e);
+			if (listening.get(ctx) instanceof ObjectName)
+				return;
+			try {
+				final ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Talker,"
+						+ (instanceName == null ? "" : "monger=" + instanceName + ",") + "name="
+						+ ObjectName.quote(ctx.name));
+				ManagementFactory.getPlatformMBeanServer().registerMBean(ctx.metrics, name);
+				listening.put(ctx, name);
+			} catch (JMException e) {
+				log.warn("Unable to register MBean of talker: " + ctx + ": " + e);
+				listening.put(ctx, NO_MBEAN);
+			}
+		}
+	}
+
+	private void removeListening(final TalkerContext ctx) {
+		synchronized (listening) {
+			unregisterMBean(ctx, listening.remove(ctx));
+		}
+	}
+
+	private void unregisterMBean(final TalkerContext ctx, final Object mbean) {
+		if (!(mbean instanceof ObjectName))
+			return;
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.unregisterMBean((ObjectName) mbean);
+		} catch (JMException e) {
+			log.warn("Unable to unregister MBean of talker: " + ctx + ": " + e);
 		}
 	}
 
+	/**
+	 * Decide on first send if the message is sampled, messages sent again keep the decision (and
+	 * time) of first send, the message may be already in a chest
+	 */
+	private void sample(final Whisper<?> whisper, final LocalQueue localQueue) {
+		if (!whisper.isUnsent())
+			return;
+		final int mask = samplingMask;
+		whisper.stamp((mask >= 0) && ((++localQueue.sends & mask) == 0));
+	}
+
 	/**
 	 * Send message and optionally wait response
 	 * 
 	 * @param whisper
 	 * @return true if message is sended
 	 */
-	public boolean send(Whisper<?> whisper) {
-		if (isShutdown.get())
+	public boolean send(final Whisper<?> whisper) {
+		return send(whisper, null);
+	}
+
+	/**
+	 * Send message and report the outcome for each recipient
+	 * 
+	 * @param whisper
+	 * @param listener receive the outcome for each recipient (can be null)
+	 * @return false if GossipMonger is shutdown or message was not queued by some recipient
+	 */
+	public boolean send(final Whisper<?> whisper, final DeliveryListener listener) {
+		whisper.checkLive();
+		if (isShutdown.get()) {
+			whisper.release();
 			return false;
+		}
 		// Internal Queue (Local Thread) for INPLACE multiple recursive calls
-		final ArrayDeque<Whisper<?>> localQueue = ref.get();
-		if (!localQueue.isEmpty()) {
-			localQueue.addLast(whisper);
+		final LocalQueue localQueue = ref.get();
+		sample(whisper, localQueue);
+		if (localQueue.active) {
+			localQueue.add(whisper, listener);
 			return true;
 		}
-		localQueue.addLast(whisper);
-		while ((whisper = localQueue.peekFirst()) != null) {
-			final Integer type = whisper.dest;
-			final Set<Talker> set = map.get(type);
-			if (set != null) {
-				for (final Talker talker : set) {
-					final TalkerContext ctx = talker.getState();
-					switch (ctx.type) {
-					case INPLACE_UNSYNC:
-						talker.newMessage(whisper);
-						break;
-					case INPLACE_SYNC:
-						synchronized (talker) {
-							talker.newMessage(whisper);
-						}
-						break;
-					case QUEUED_UNBOUNDED:
-					case QUEUED_BOUNDED:
-						while (!ctx.queueMessage(whisper))
-							;
-						break;
-					}
-				}
+		localQueue.active = true;
+		try {
+			final boolean sended = route(whisper, listener);
+			routeLocalQueue(localQueue);
+			return sended;
+		} finally {
+			localQueue.clear();
+		}
+	}
+
+	/**
+	 * Send messages, grouped by destination (recipients are resolved once per destination and
+	 * messages are queued in bulk). Order is preserved for each destination.
+	 * 
+	 * @param whispers
+	 * @return true if messages are sended
+	 */
+	public boolean send(final Whisper<?>[] whispers) {
+		return send(Arrays.asList(whispers), null);
+	}
+
+	/**
+	 * Send messages, grouped by destination (recipients are resolved once per destination and
+	 * messages are queued in bulk). Order is preserved for each destination.
+	 * 
+	 * @param whispers
+	 * @return true if messages are sended
+	 */
+	public boolean send(final Collection<? extends Whisper<?>> whispers) {
+		return send(whispers, null);
+	}
+
+	/**
+	 * Send messages, grouped by destination, and report the outcome for each recipient
+	 * 
+	 * @param whispers
+	 * @param listener receive the outcome for each recipient (can be null)
+	 * @return false if GossipMonger is shutdown or some message was not queued by some recipient
+	 * @see #send(Collection)
+	 */
+	public boolean send(final Collection<? extends Whisper<?>> whispers, final DeliveryListener listener) {
+		for (final Whisper<?> whisper : whispers) {
+			whisper.checkLive();
+		}
+		if (isShutdown.get()) {
+			for (final Whisper<?> whisper : whispers) {
+				whisper.release();
 			}
-			localQueue.pollFirst();
+			return false;
+		}
+		final LocalQueue localQueue = ref.get();
+		for (final Whisper<?> whisper : whispers) {
+			sample(whisper, localQueue);
+		}
+		if (localQueue.active) {
+			for (final Whisper<?> whisper : whispers) {
+				localQueue.add(whisper, listener);
+			}
+			return true;
+		}
+		localQueue.active = true;
+		try {
+			final boolean sended = routeGrouped(whispers, listener);
+			routeLocalQueue(localQueue);
+			return sended;
+		} finally {
+			localQueue.clear();
 		}
-		return true;
 	}
 
-	final void scheduleTalkerContext(final TalkerContext ctx) {
-		threadPool.submit(ctx);
+	private void routeLocalQueue(final LocalQueue localQueue) {
+		Whisper<?> whisper;
+		while ((whisper = localQueue.peekWhisper()) != null) {
+			route(whisper, localQueue.peekListener());
+			localQueue.poll();
+		}
+	}
+
+	private Talker[] recipients(final Whisper<?> whisper) {
+		final Destination destination = whisper.destination;
+		if ((destination != null) && (destination.gossipMonger == this))
+			return destination.recipients();
+		return routes.get(whisper.getDest());
 	}
 
-	@Override
-	public void run() {
+	private boolean route(final Whisper<?> whisper, final DeliveryListener listener) {
 		try {
-			if (log.isDebugEnabled())
-				log.debug("Task begin: " + toString());
-			while (!isShutdown()) {
-				boolean scheduled = false;
-				for (final Talker talker : listenerQueuedTalkers) {
-					final TalkerContext ctx = talker.getState();
-					if (ctx.needScheduling()) {
-						scheduled = true;
-						scheduleTalkerContext(ctx);
+			boolean sended = true;
+			final Talker[] talkers = recipients(whisper);
+			if (talkers != null) {
+				for (final Talker talker : talkers) {
+					if (!deliver(talker, whisper, listener))
+						sended = false;
+				}
+			}
+			final FilterTable.Filters f = filters.get(whisper.getDest());
+			if ((f != null) && !routeFiltered(f, whisper, listener, talkers))
+				sended = false;
+			return sended;
+		} finally {
+			// Reference of sender (pooled messages)
+			whisper.release();
+		}
+	}
+
+	private boolean routeGrouped(final Collection<? extends Whisper<?>> whispers,
+			final DeliveryListener listener) {
+		try {
+			final Map<Integer, List<Whisper<?>>> groups = new LinkedHashMap<Integer, List<Whisper<?>>>();
+			for (final Whisper<?> whisper : whispers) {
+				final Integer dest = Integer.valueOf(whisper.getDest());
+				List<Whisper<?>> group = groups.get(dest);
+				if (group == null) {
+					group = new ArrayList<Whisper<?>>();
+					groups.put(dest, group);
+				}
+				group.add(whisper);
+			}
+			boolean sended = true;
+			for (final Entry<Integer, List<Whisper<?>>> e : groups.entrySet()) {
+				final List<Whisper<?>> group = e.getValue();
+				final FilterTable.Filters f = filters.get(e.getKey().intValue());
+				final Talker[] talkers = recipients(group.get(0));
+				if (f != null) {
+					for (final Whisper<?> whisper : group) {
+						if (!routeFiltered(f, whisper, listener, talkers))
+							sended = false;
 					}
 				}
-				if (scheduled) {
-					Thread.yield();
-				} else {
-					try {
-						// System.out.println("GossipMonger sleep()");
-						Thread.sleep(100);
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						e.printStackTrace(System.out);
-						break;
+				if (talkers == null)
+					continue;
+				for (final Talker talker : talkers) {
+					final TalkerContext ctx = talker.getState();
+					if (ctx.isQueued) {
+						if (!ctx.queueMessages(group, listener))
+							sended = false;
+						continue;
 					}
+					for (final Whisper<?> whisper : group) {
+						deliver(talker, whisper, listener);
+					}
+				}
+			}
+			return sended;
+		} finally {
+			// Reference of sender (pooled messages)
+			for (final Whisper<?> whisper : whispers) {
+				whisper.release();
+			}
+		}
+	}
+
+	/**
+	 * Deliver to recipients of filtered subscriptions (predicates, then equality indexes) and to
+	 * one member of each group; a Talker receives the message at most once, even if several
+	 * subscriptions match or it is also a plain recipient (the set of delivered is only filled when
+	 * a subscription matches)
+	 */
+	private boolean routeFiltered(final FilterTable.Filters f, final Whisper<?> whisper,
+			final DeliveryListener listener, final Talker[] plain) {
+		final Set<Talker> delivered = ref.get().delivered;
+		boolean seeded = false;
+		try {
+			boolean sended = true;
+			for (int i = 0; i < f.predicates.length; i++) {
+				if (!f.predicates[i].accept(whisper))
+					continue;
+				if (!seeded)
+					seeded = seed(delivered, plain);
+				final Talker talker = f.talkers[i];
+				if (delivered.add(talker) && !deliver(talker, whisper, listener))
+					sended = false;
+			}
+			for (int i = 0; i < f.keys.length; i++) {
+				final Object key = f.keys[i].key(whisper);
+				final Talker[] talkers = (key == null ? null : f.indexes[i].get(key));
+				if (talkers == null)
+					continue;
+				if (!seeded)
+					seeded = seed(delivered, plain);
+				for (final Talker talker : talkers) {
+					if (delivered.add(talker) && !deliver(talker, whisper, listener))
+						sended = false;
 				}
 			}
+			for (final TalkerGroup group : f.groups) {
+				final Talker member = group.select(whisper);
+				if (member == null)
+					continue;
+				if (!seeded)
+					seeded = seed(delivered, plain);
+				if (delivered.add(member) && !deliver(member, whisper, listener))
+					sended = false;
+			}
+			return sended;
 		} finally {
+			if (seeded)
+				delivered.clear();
+		}
+	}
+
+	/**
+	 * Mark plain recipients as delivered (on first match)
+	 * 
+	 * @return true
+	 */
+	private static boolean seed(final Set<Talker> delivered, final Talker[] plain) {
+		if (plain != null)
+			Collections.addAll(delivered, plain);
+		return true;
+	}
+
+	private boolean deliver(final Talker talker, final Whisper<?> whisper, final DeliveryListener listener) {
+		final Delivery delivery = deliver(talker, whisper);
+		if (listener != null)
+			listener.delivered(talker, whisper, delivery);
+		return (delivery == Delivery.DELIVERED);
+	}
+
+	private Delivery deliver(final Talker talker, final Whisper<?> whisper) {
+		final TalkerContext ctx = talker.getState();
+		switch (ctx.type) {
+		case INPLACE_UNSYNC:
+			ctx.handleInplace(whisper);
+			return Delivery.DELIVERED;
+		case INPLACE_SYNC:
+			synchronized (talker) {
+				ctx.handleInplace(whisper);
+			}
+			return Delivery.DELIVERED;
+		case INPLACE_COMBINING:
+			ctx.combiner.handle(whisper);
+			return Delivery.DELIVERED;
+		default:
+			return ctx.queueMessage(whisper);
+		}
+	}
+
+	final void scheduleTalkerContext(final TalkerContext ctx) {
+		try {
+			ctx.dispatcher.dispatch(ctx);
+		} catch (RejectedExecutionException e) {
+			if (!isShutdown())
+				throw e;
 			if (log.isDebugEnabled())
-				log.debug("Task end: " + toString());
+				log.debug("Rejected scheduling (shutdown) talker: " + ctx);
 		}
 	}
 
@@ -205,12 +820,24 @@ public class GossipMonger implements Runnable {
 	 * Shutdown GossipMonger and associated Threads
 	 */
 	public void shutdown() {
-		singleton = null;
+		synchronized (GossipMonger.class) {
+			if (singleton == this)
+				singleton = null;
+		}
 		log.info("Shuting down GossipMonger");
 		isShutdown.set(true);
-		threadPool.shutdown(); // Disable new tasks from being submitted
+		// Idle drain loops (IdleStrategy.PARK) see shutdown and release its thread
+		for (final TalkerContext ctx : listening.keySet()) {
+			ctx.wakeup();
+		}
+		dispatcher.shutdown(); // Disable new tasks from being submitted
+		if (virtualDispatcher != dispatcher)
+			virtualDispatcher.shutdown();
 		// TODO: Wait for messages to end processing
-		shutdownAndAwaitTermination(threadPool);
+		shutdownAndAwaitTermination(dispatcher);
+		if (virtualDispatcher != dispatcher)
+			shutdownAndAwaitTermination(virtualDispatcher);
+		setJmxEnabled(false);
 		// Clean ThreadLocal
 		ref.remove();
 	}
@@ -222,7 +849,7 @@ public class GossipMonger implements Runnable {
 		return isShutdown.get();
 	}
 
-	private void shutdownAndAwaitTermination(final ExecutorService pool) {
+	private void shutdownAndAwaitTermination(final Dispatcher pool) {
 		// pool.shutdown(); // Disable new tasks from being submitted
 		try {
 			// Wait a while for existing tasks to terminate
@@ -244,17 +871,80 @@ public class GossipMonger implements Runnable {
 		return ("JohnDoe-" + Integer.toString(talker.hashCode()));
 	}
 
-	private Chest<Whisper<?>> createChest(final TalkerType type) {
+	private ChestPool getChestPool(final TalkerType type, final int capacity) {
+		final String key = type.name() + ":" + capacity;
+		ChestPool pool = chestPools.get(key);
+		if (pool == null) {
+			final ChestPool newPool = new ChestPool(type, capacity);
+			pool = chestPools.putIfAbsent(key, newPool);
+			if (pool == null)
+				pool = newPool;
+		}
+		return pool;
+	}
+
+	static Chest<Whisper<?>> createChest(final TalkerType type, final int capacity) {
 		switch (type) {
 		case INPLACE_UNSYNC:
 			return null;
 		case INPLACE_SYNC:
 			return null;
+		case INPLACE_COMBINING:
+			return null;
 		case QUEUED_UNBOUNDED:
+		case QUEUED_VIRTUAL:
 			return new ChestUnbounded<Whisper<?>>();
 		case QUEUED_BOUNDED:
-			return new ChestBounded<Whisper<?>>();
+			return new ChestBounded<Whisper<?>>(capacity);
+		case QUEUED_MPSC_BOUNDED:
+			return new ChestMpscBounded<Whisper<?>>(capacity);
+		case QUEUED_MPSC_UNBOUNDED:
+			return new ChestMpscUnbounded<Whisper<?>>();
 		}
 		throw new IllegalArgumentException("Invalid TalkerType");
 	}
+
+	/**
+	 * Pending messages (and listeners) of current Thread
+	 */
+	private static final class LocalQueue {
+		private static final DeliveryListener NO_LISTENER = new DeliveryListener() {
+			@Override
+			public void delivered(final Talker talker, final Whisper<?> whisper, final Delivery delivery) {
+			}
+		};
+		private final ArrayDeque<Whisper<?>> whispers = new ArrayDeque<Whisper<?>>();
+		private final ArrayDeque<DeliveryListener> listeners = new ArrayDeque<DeliveryListener>();
+		// Set while this Thread is routing, nested sends are queued
+		boolean active = false;
+		// Messages sent by this Thread (latency sampling)
+		int sends = 0;
+		// Recipients of current filtered message (routing is not reentrant, nested sends are queued)
+		final Set<Talker> delivered = Collections.newSetFromMap(new IdentityHashMap<Talker, Boolean>());
+
+		void add(final Whisper<?> whisper, final DeliveryListener listener) {
+			whispers.addLast(whisper);
+			listeners.addLast(listener == null ? NO_LISTENER : listener);
+		}
+
+		Whisper<?> peekWhisper() {
+			return whispers.peekFirst();
+		}
+
+		DeliveryListener peekListener() {
+			final DeliveryListener listener = listeners.peekFirst();
+			return (listener == NO_LISTENER ? null : listener);
+		}
+
+		void poll() {
+			whispers.pollFirst();
+			listeners.pollFirst();
+		}
+
+		void clear() {
+			whispers.clear();
+			listeners.clear();
+			active = false;
+		}
+	}
 }
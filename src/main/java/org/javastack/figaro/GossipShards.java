@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Set of independent GossipMongers (shards), each with its own routing table and a pinned
+ * dispatcher (one thread per shard, by default one shard per core). Each name has a home shard
+ * (by hash) that holds its Talkers and routes its messages, so subsystems do not contend on
+ * shared routes or threads.
+ * <p>
+ * Create Talkers in its home shard ({@link #getShard(String)}) and send messages with destinations
+ * of {@link #getDestination(String)}.
+ */
+public class GossipShards {
+	private final GossipMonger[] shards;
+
+	/**
+	 * Create one shard per available processor
+	 */
+	public GossipShards() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create shards
+	 * 
+	 * @param count number of shards
+	 */
+	public GossipShards(final int count) {
+		if (count < 1)
+			throw new IllegalArgumentException("Invalid count: " + count);
+		shards = new GossipMonger[count];
+		for (int i = 0; i < count; i++) {
+			shards[i] = new GossipMonger(new DispatcherPinned("figaro-shard-" + i));
+		}
+	}
+
+	/**
+	 * Return number of shards
+	 * 
+	 * @return count
+	 */
+	public int size() {
+		return shards.length;
+	}
+
+	/**
+	 * Return shard by index
+	 * 
+	 * @param index
+	 * @return shard
+	 */
+	public GossipMonger getShard(final int index) {
+		return shards[index];
+	}
+
+	/**
+	 * Return home shard of a name (Talker or type)
+	 * 
+	 * @param name
+	 * @return shard
+	 */
+	public GossipMonger getShard(final String name) {
+		// Spread hash, like HashMap
+		int h = name.hashCode();
+		h ^= (h >>> 16);
+		return shards[(h & 0x7FFFFFFF) % shards.length];
+	}
+
+	/**
+	 * Return destination in home shard of type/name
+	 * 
+	 * @param type
+	 * @return destination
+	 */
+	public Destination getDestination(final String type) {
+		return getShard(type).getDestination(type);
+	}
+
+	/**
+	 * Send message in home shard of its destination, or in all shards if dest is BROADCAST
+	 * 
+	 * @param whisper created with a {@link Destination} of this shards (or BROADCAST)
+	 * @return true if message is sended
+	 * @throws IllegalArgumentException if whisper has not a Destination nor is BROADCAST
+	 */
+	public boolean send(final Whisper<?> whisper) {
+		final Destination destination = whisper.destination;
+		if (destination != null)
+			return destination.gossipMonger.send(whisper);
+		if (whisper.getDest() != GossipType.BROADCAST)
+			throw new IllegalArgumentException("Whisper without Destination: " + whisper);
+		// Each send consume a reference (pooled messages)
+		for (int i = 1; i < shards.length; i++) {
+			whisper.retain();
+		}
+		boolean sended = true;
+		for (final GossipMonger shard : shards) {
+			if (!shard.send(whisper))
+				sended = false;
+		}
+		return sended;
+	}
+
+	/**
+	 * Shutdown all shards
+	 */
+	public void shutdown() {
+		for (final GossipMonger shard : shards) {
+			shard.shutdown();
+		}
+	}
+}
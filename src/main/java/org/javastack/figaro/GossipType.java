@@ -14,6 +14,8 @@
  */
 package org.javastack.figaro;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -24,18 +26,18 @@ public class GossipType {
 	/**
 	 * Destination is NONE (messages are dropped)
 	 */
-	public static final Integer NULL = Integer.valueOf(0); // DROP
+	public static final int NULL = 0; // DROP
 	/**
 	 * Destination is BROADCAST (ALL registered listeners)
 	 */
-	public static final Integer BROADCAST = Integer.valueOf(Integer.MAX_VALUE); // BROADCAST
+	public static final int BROADCAST = Integer.MAX_VALUE; // BROADCAST
 	//
 	private final ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<String, Integer>();
 	private final AtomicInteger counter = new AtomicInteger();
 
 	GossipType() {
-		map.putIfAbsent("NULL", BROADCAST);
-		map.putIfAbsent("BROADCAST", BROADCAST);
+		map.putIfAbsent("NULL", Integer.valueOf(NULL));
+		map.putIfAbsent("BROADCAST", Integer.valueOf(BROADCAST));
 	}
 
 	/**
@@ -44,19 +46,32 @@ public class GossipType {
 	 * @param name
 	 * @return id of new type/destination
 	 */
-	public Integer registerName(final String name) {
+	public int registerName(final String name) {
+		final Integer id = map.get(name);
+		if (id != null)
+			return id.intValue();
 		final Integer newid = Integer.valueOf(counter.incrementAndGet());
 		final Integer assigned = map.putIfAbsent(name, newid);
-		return (assigned == null ? newid : assigned);
+		return (assigned == null ? newid : assigned).intValue();
 	}
 
 	/**
 	 * Query for a registered type/destination
 	 * 
 	 * @param name
-	 * @return id of registered type/destination
+	 * @return id of registered type/destination or NULL if not registered
 	 */
-	public Integer getIdByName(final String name) {
-		return map.get(name);
+	public int getIdByName(final String name) {
+		final Integer id = map.get(name);
+		return (id == null ? NULL : id.intValue());
+	}
+
+	/**
+	 * Return registered types/destinations (name to id, including NULL and BROADCAST)
+	 * 
+	 * @return read-only live view
+	 */
+	Map<String, Integer> getNames() {
+		return Collections.unmodifiableMap(map);
 	}
 }
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * What the drain loop of a QUEUED Talker does when its chest is empty
+ * 
+ * @see TalkerConfig#setIdleStrategy(IdleStrategy, long, java.util.concurrent.TimeUnit)
+ */
+public enum IdleStrategy {
+	/**
+	 * Release the thread immediately (next message schedules the Talker again)
+	 */
+	RELEASE,
+	/**
+	 * Busy-spin polling the chest (lowest latency, burns a core)
+	 */
+	SPIN,
+	/**
+	 * Poll the chest yielding the thread between checks
+	 */
+	YIELD,
+	/**
+	 * Poll the chest parking with progressive backoff (1us up to 1ms)
+	 */
+	BACKOFF,
+	/**
+	 * Park until signalled by a producer (not supported with concurrency greater than 1)
+	 */
+	PARK
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Arrays;
+
+/**
+ * Small set of ints in an array (not thread-safe), compact for the few elements of a Talker
+ */
+final class IntSet {
+	private int[] values = new int[2];
+	private int size = 0;
+
+	boolean add(final int value) {
+		if (indexOf(value) >= 0)
+			return false;
+		if (size == values.length)
+			values = Arrays.copyOf(values, size << 1);
+		values[size++] = value;
+		return true;
+	}
+
+	boolean remove(final int value) {
+		final int i = indexOf(value);
+		if (i < 0)
+			return false;
+		values[i] = values[--size];
+		return true;
+	}
+
+	boolean contains(final int value) {
+		return (indexOf(value) >= 0);
+	}
+
+	boolean isEmpty() {
+		return (size == 0);
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	private int indexOf(final int value) {
+		for (int i = 0; i < size; i++) {
+			if (values[i] == value)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Histogram of nanoseconds with power of two buckets (bucket N holds values below 2^N), precision
+ * is a factor of 2, enough to see the shape of latency without cost
+ */
+class LatencyHistogram {
+	private static final int BUCKETS = 64;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private static final AtomicLongFieldUpdater<LatencyHistogram> MAX = //
+			AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "max");
+	private volatile long max = 0;
+
+	final void record(final long nanos) {
+		final long value = (nanos < 0 ? 0 : nanos);
+		buckets.getAndIncrement(BUCKETS - Long.numberOfLeadingZeros(value));
+		long current;
+		while (((current = max) < value) && !MAX.compareAndSet(this, current, value))
+			;
+	}
+
+	final long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	final long max() {
+		return max;
+	}
+
+	/**
+	 * Return the upper bound of the bucket that holds the percentile
+	 * 
+	 * @param percentile (0.0 - 1.0)
+	 * @return nanoseconds (0 if no samples)
+	 */
+	final long percentile(final double percentile) {
+		final long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0)
+			return 0;
+		final long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if ((seen >= rank) && (counts[i] > 0))
+				return Math.min((1L << i) - 1, max);
+		}
+		return max;
+	}
+}
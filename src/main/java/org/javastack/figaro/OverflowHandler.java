@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Receive the messages that do not fit in a full chest (OverflowPolicy.HANDLER)
+ */
+public interface OverflowHandler {
+	/**
+	 * Message not queued because chest of talker is full (called in sender Thread)
+	 * 
+	 * @param talker
+	 * @param whisper
+	 */
+	public void overflow(final Talker talker, final Whisper<?> whisper);
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * What to do when a bounded chest is full
+ */
+public enum OverflowPolicy {
+	/**
+	 * Sender waits (parking, not spinning) until there is room or timeout expires, no message is lost
+	 * (default). Without timeout, a handler that sends to a full chest can deadlock if the drain of
+	 * that chest waits for the same dispatcher threads.
+	 */
+	BLOCK,
+	/**
+	 * The new message is dropped
+	 */
+	DROP_NEWEST,
+	/**
+	 * The oldest queued message is dropped to make room for the new (only QUEUED_BOUNDED)
+	 */
+	DROP_OLDEST,
+	/**
+	 * The new message is rejected and send return false
+	 */
+	FAIL,
+	/**
+	 * The new message is passed to the {@link OverflowHandler}
+	 */
+	HANDLER
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AtomicLong padded to its own cache line, avoid false sharing between producer and consumer
+ * counters
+ */
+@SuppressWarnings("serial")
+class PaddedAtomicLong extends AtomicLong {
+	// Cache line (64 bytes) after value, header before
+	protected long p1, p2, p3, p4, p5, p6, p7;
+
+	PaddedAtomicLong() {
+		super();
+	}
+
+	PaddedAtomicLong(final long initialValue) {
+		super(initialValue);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Recipients of each type/destination, indexed by id (ids are dense)
+ * <p>
+ * Copy-on-write: readers do one volatile read and get an immutable snapshot, writers are
+ * serialized and replace the snapshot of the changed id only (the table is copied only to grow).
+ */
+class RouteTable {
+	static final Talker[] EMPTY = new Talker[0];
+	private volatile AtomicReferenceArray<Talker[]> routes = new AtomicReferenceArray<Talker[]>(64);
+	private volatile Talker[] broadcast = EMPTY;
+	// Incremented after each change, for cached snapshots
+	private volatile int version = 0;
+
+	/**
+	 * Return recipients of a type/destination
+	 * 
+	 * @param id
+	 * @return recipients or null if none (do not modify)
+	 */
+	Talker[] get(final int id) {
+		if (id == GossipType.BROADCAST)
+			return broadcast;
+		final AtomicReferenceArray<Talker[]> table = routes;
+		return (((id > 0) && (id < table.length())) ? table.get(id) : null);
+	}
+
+	/**
+	 * Return version of subscriptions (changed after publish of new snapshots)
+	 */
+	int version() {
+		return version;
+	}
+
+	synchronized boolean add(final int id, final Talker talker) {
+		if (id == GossipType.BROADCAST) {
+			final Talker[] set = append(broadcast, talker);
+			if (set == broadcast)
+				return false;
+			broadcast = set;
+			version++;
+			return true;
+		}
+		if (id <= GossipType.NULL)
+			throw new IllegalArgumentException("Invalid id: " + id);
+		AtomicReferenceArray<Talker[]> table = routes;
+		if (id >= table.length()) {
+			final AtomicReferenceArray<Talker[]> next = new AtomicReferenceArray<Talker[]>(grow(id));
+			for (int i = 0; i < table.length(); i++) {
+				next.set(i, table.get(i));
+			}
+			routes = table = next;
+		}
+		final Talker[] old = table.get(id);
+		final Talker[] set = append(old, talker);
+		if (set == old)
+			return false;
+		table.set(id, set);
+		version++;
+		return true;
+	}
+
+	synchronized boolean remove(final int id, final Talker talker) {
+		if (id == GossipType.BROADCAST) {
+			final Talker[] set = remove(broadcast, talker);
+			if (set == broadcast)
+				return false;
+			broadcast = set;
+			version++;
+			return true;
+		}
+		final AtomicReferenceArray<Talker[]> table = routes;
+		if ((id <= GossipType.NULL) || (id >= table.length()) || (table.get(id) == null))
+			return false;
+		final Talker[] old = table.get(id);
+		final Talker[] set = remove(old, talker);
+		if (set == old)
+			return false;
+		table.set(id, (set.length == 0 ? null : set));
+		version++;
+		return true;
+	}
+
+	private static int grow(final int id) {
+		int len = 64;
+		while (len <= id) {
+			len <<= 1;
+		}
+		return len;
+	}
+
+	private static Talker[] append(final Talker[] set, final Talker talker) {
+		if (set == null)
+			return new Talker[] {
+				talker
+			};
+		for (final Talker t : set) {
+			if (t == talker)
+				return set;
+		}
+		final Talker[] next = Arrays.copyOf(set, set.length + 1);
+		next[set.length] = talker;
+		return next;
+	}
+
+	private static Talker[] remove(final Talker[] set, final Talker talker) {
+		for (int i = 0; i < set.length; i++) {
+			if (set[i] == talker) {
+				final Talker[] next = new Talker[set.length - 1];
+				System.arraycopy(set, 0, next, 0, i);
+				System.arraycopy(set, i + 1, next, i, set.length - i - 1);
+				return next;
+			}
+		}
+		return set;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Counter striped by Thread, each stripe in its own cache line, so concurrent writers do not
+ * contend (reads sum all stripes). Stripes are allocated on first contention, an uncontended
+ * counter is a single long.
+ */
+class StripedCounter {
+	// Longs per cache line (64 bytes)
+	private static final int PAD = 8;
+	private static final int STRIPES = stripes();
+	private static final AtomicLongFieldUpdater<StripedCounter> BASE = //
+			AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "base");
+	private volatile long base = 0;
+	private volatile AtomicLongArray cells = null;
+
+	private static int stripes() {
+		final int n = Runtime.getRuntime().availableProcessors() * 2;
+		return Integer.highestOneBit(n - 1) << 1;
+	}
+
+	final void add(final long delta) {
+		AtomicLongArray cells = this.cells;
+		if (cells == null) {
+			final long current = base;
+			if (BASE.compareAndSet(this, current, current + delta))
+				return;
+			cells = cells();
+		}
+		final int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		cells.getAndAdd(stripe * PAD, delta);
+	}
+
+	private synchronized final AtomicLongArray cells() {
+		if (cells == null)
+			cells = new AtomicLongArray(STRIPES * PAD);
+		return cells;
+	}
+
+	final void increment() {
+		add(1);
+	}
+
+	final long sum() {
+		long sum = base;
+		final AtomicLongArray cells = this.cells;
+		if (cells == null)
+			return sum;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PAD);
+		}
+		return sum;
+	}
+}
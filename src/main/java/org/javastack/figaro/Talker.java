@@ -43,7 +43,9 @@ public interface Talker {
 	public void unregisterListener();
 
 	/**
-	 * Register extra Type/Name in GossipMonger for incoming messages
+	 * Register extra Type/Name in GossipMonger for incoming messages, hierarchical names (segments
+	 * separated by dot) accept wildcards: "*" match one segment and "#" zero or more segments
+	 * (orders.*.created, orders.#)
 	 * 
 	 * @param type
 	 */
@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional settings of a Talker. A config can be shared by many Talkers, they keep a reference
+ * (not a copy), so it must not be changed after the Talkers are created.
+ */
+public class TalkerConfig {
+	/**
+	 * Default capacity of bounded chests
+	 */
+	public static final int DEFAULT_CAPACITY = 512;
+	/**
+	 * Default maximum messages passed to a BatchTalker in each call
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	/**
+	 * Used by Talkers created without settings (never changed)
+	 */
+	static final TalkerConfig DEFAULT = new TalkerConfig();
+	//
+	Dispatcher dispatcher = null;
+	int capacity = DEFAULT_CAPACITY;
+	OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	long overflowTimeoutNanos = 0;
+	OverflowHandler overflowHandler = null;
+	int batchSize = DEFAULT_BATCH_SIZE;
+	Chest<Whisper<?>> chest = null;
+	int concurrency = 1;
+	IdleStrategy idleStrategy = IdleStrategy.RELEASE;
+	long idleTimeoutNanos = 0;
+	boolean lazyChest = false;
+
+	/**
+	 * Set dispatcher of Talker (only used by QUEUED types)
+	 * 
+	 * @param dispatcher if null use the default of GossipMonger
+	 * @return this
+	 */
+	public TalkerConfig setDispatcher(final Dispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+		return this;
+	}
+
+	/**
+	 * Set capacity of chest (only used by bounded types)
+	 * 
+	 * @param capacity
+	 * @return this
+	 */
+	public TalkerConfig setCapacity(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		this.capacity = capacity;
+		return this;
+	}
+
+	/**
+	 * Set the policy when chest is full (only used by bounded types)
+	 * 
+	 * @param overflowPolicy default BLOCK (lossless, the lossy policies are opt-in)
+	 * @return this
+	 */
+	public TalkerConfig setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+		if (overflowPolicy == null)
+			throw new IllegalArgumentException("Invalid OverflowPolicy");
+		this.overflowPolicy = overflowPolicy;
+		return this;
+	}
+
+	/**
+	 * Set maximum time that sender wait with OverflowPolicy.BLOCK
+	 * 
+	 * @param timeout zero is wait forever
+	 * @param unit
+	 * @return this
+	 */
+	public TalkerConfig setOverflowTimeout(final long timeout, final TimeUnit unit) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("Invalid timeout: " + timeout);
+		this.overflowTimeoutNanos = unit.toNanos(timeout);
+		return this;
+	}
+
+	/**
+	 * Set handler for OverflowPolicy.HANDLER
+	 * 
+	 * @param overflowHandler
+	 * @return this
+	 */
+	public TalkerConfig setOverflowHandler(final OverflowHandler overflowHandler) {
+		this.overflowHandler = overflowHandler;
+		return this;
+	}
+
+	/**
+	 * Set maximum messages passed to a BatchTalker in each call (only used by QUEUED types)
+	 * 
+	 * @param batchSize
+	 * @return this
+	 */
+	public TalkerConfig setBatchSize(final int batchSize) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Invalid batchSize: " + batchSize);
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Set a custom chest, instead of the default of TalkerType (only used by QUEUED types). A
+	 * chest can not be shared between Talkers.
+	 * 
+	 * @param chest if null use the default of TalkerType
+	 * @return this
+	 * @see ChestPersistent
+	 */
+	public TalkerConfig setChest(final Chest<Whisper<?>> chest) {
+		this.chest = chest;
+		return this;
+	}
+
+	/**
+	 * Set maximum threads processing messages of Talker at same time, the Talker is a pool of
+	 * competing workers that share its chest: each message is processed once, by the first free
+	 * worker (messages are not ordered and newMessage must be thread-safe). Only for QUEUED_UNBOUNDED,
+	 * QUEUED_BOUNDED and QUEUED_VIRTUAL types, without custom chest.
+	 * 
+	 * @param concurrency default 1
+	 * @return this
+	 */
+	public TalkerConfig setConcurrency(final int concurrency) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("Invalid concurrency: " + concurrency);
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	/**
+	 * Set what the drain loop does when chest is empty (only used by QUEUED types), the thread is
+	 * held until timeout expires (or throughput of dispatcher is consumed)
+	 * 
+	 * @param idleStrategy default RELEASE
+	 * @param timeout zero is hold thread forever (use a dedicated dispatcher)
+	 * @param unit
+	 * @return this
+	 */
+	public TalkerConfig setIdleStrategy(final IdleStrategy idleStrategy, final long timeout,
+			final TimeUnit unit) {
+		if (idleStrategy == null)
+			throw new IllegalArgumentException("Invalid IdleStrategy");
+		if (timeout < 0)
+			throw new IllegalArgumentException("Invalid timeout: " + timeout);
+		this.idleStrategy = idleStrategy;
+		this.idleTimeoutNanos = unit.toNanos(timeout);
+		return this;
+	}
+
+	/**
+	 * Allocate the chest on first message and return it to a pool (shared by the GossipMonger) when
+	 * drained, an idle Talker holds no chest. For many mostly idle Talkers (one per device or
+	 * session), at the cost of a few atomic operations per message. Only for QUEUED types, without
+	 * custom chest and concurrency 1.
+	 * 
+	 * @param lazyChest default false
+	 * @return this
+	 */
+	public TalkerConfig setLazyChest(final boolean lazyChest) {
+		this.lazyChest = lazyChest;
+		return this;
+	}
+}
@@ -14,6 +14,13 @@
  */
 package org.javastack.figaro;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
 import org.apache.log4j.Logger;
 
 /**
@@ -21,72 +28,499 @@ import org.apache.log4j.Logger;
  */
 class TalkerContext implements Runnable {
 	private static final Logger log = Logger.getLogger(TalkerContext.class);
-	private volatile boolean running = false;
+	private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final AtomicIntegerFieldUpdater<TalkerContext> SCHEDULED = //
+			AtomicIntegerFieldUpdater.newUpdater(TalkerContext.class, "scheduled");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<TalkerContext, Chest> CHEST = //
+			AtomicReferenceFieldUpdater.newUpdater(TalkerContext.class, Chest.class, "chest");
+	/**
+	 * Drain loops submitted to the pool (incremented on submit, decremented when the loop ends), up
+	 * to concurrency
+	 */
+	private volatile int scheduled = 0;
 	final String name;
 	final TalkerType type;
 	final GossipMonger gossipMonger;
-	final Chest<Whisper<?>> chest;
+	final Dispatcher dispatcher;
+	// Null if INPLACE, or lazy chest without pending messages (a ChestPool.Leased if lazy)
+	volatile Chest<Whisper<?>> chest;
+	// Source of lazy chest (null if chest is owned)
+	private final ChestPool chestPool;
+	// Detached lazy chest with messages older than those of chest (drained first, by drain loop)
+	private volatile Chest<Whisper<?>> stale = null;
+	final boolean isQueued;
 	final Talker parent;
+	// Shared by Talkers created with same config (not copied, keeps per-talker state small)
+	private final TalkerConfig config;
+	// Drain loop parked by IdleStrategy.PARK (unparked by producers)
+	private volatile Thread idleThread = null;
+	private final boolean isBatch;
+	// Reused by drain loop (only one thread at a time), null if not BatchTalker or concurrency > 1
+	private final ArrayList<Whisper<?>> batch;
+	final TalkerMetrics metrics = new TalkerMetrics(this);
+	// Only for INPLACE_COMBINING
+	final FlatCombiner combiner;
+	// Reverse index of subscriptions (guarded by this, null if none), for cheap unregister
+	IntSet routeIds = null;
+	IntSet filterIds = null;
+	// Routes subscribed by name, kept on unregister of a matching pattern
+	IntSet exactIds = null;
+	// Guarded by topics of GossipMonger
+	List<String> patterns = null;
 
 	TalkerContext(final String name, final TalkerType type, final GossipMonger gossipMonger,
-			final Chest<Whisper<?>> chest, final Talker parent) {
+			final Dispatcher dispatcher, final Chest<Whisper<?>> chest, final ChestPool chestPool,
+			final Talker parent, final TalkerConfig config) {
 		this.name = name;
 		this.type = type;
 		this.gossipMonger = gossipMonger;
+		this.dispatcher = dispatcher;
 		this.chest = chest;
+		this.chestPool = chestPool;
+		this.isQueued = ((chest != null) || (chestPool != null));
 		this.parent = parent;
+		this.config = config;
+		this.isBatch = (isQueued && (parent instanceof BatchTalker));
+		this.batch = ((isBatch && (config.concurrency == 1)) ? //
+				new ArrayList<Whisper<?>>(config.batchSize) : null);
+		this.combiner = ((type == TalkerType.INPLACE_COMBINING) ? new FlatCombiner(this) : null);
+	}
+
+	final Delivery queueMessage(final Whisper<?> whisper) {
+		// Reference of chest (pooled messages)
+		whisper.retain();
+		return queueRetained(whisper);
+	}
+
+	private final Delivery queueRetained(final Whisper<?> whisper) {
+		final boolean queued;
+		try {
+			queued = offer(whisper);
+		} catch (RuntimeException e) {
+			// Chest refused the message (custom chests), other recipients must still receive it
+			log.error("Unable to queue message in " + parent.getName() + ": " + e.toString());
+			metrics.dropped();
+			whisper.release();
+			return Delivery.REJECTED;
+		}
+		if (queued) {
+			metrics.enqueued.increment();
+			schedule();
+			return Delivery.DELIVERED;
+		}
+		final Delivery delivery = overflow(whisper);
+		if (delivery == Delivery.DELIVERED) {
+			metrics.enqueued.increment();
+		} else {
+			metrics.dropped();
+			whisper.release();
+		}
+		return delivery;
+	}
+
+	/**
+	 * Queue messages in bulk, the messages that do not fit are handled by overflow policy
+	 * 
+	 * @return true if all messages are queued
+	 */
+	final boolean queueMessages(final List<Whisper<?>> whispers, final DeliveryListener listener) {
+		final int size = whispers.size();
+		for (int i = 0; i < size; i++) {
+			whispers.get(i).retain();
+		}
+		final Chest<Whisper<?>> chest = beginWrite();
+		int queued = 0;
+		try {
+			queued = chest.offerAll(whispers);
+		} catch (RuntimeException e) {
+			// Nothing queued, retried one by one
+		} finally {
+			endWrite(chest);
+		}
+		if (queued > 0) {
+			metrics.enqueued.add(queued);
+			schedule();
+		}
+		if (listener != null) {
+			for (int i = 0; i < queued; i++) {
+				listener.delivered(parent, whispers.get(i), Delivery.DELIVERED);
+			}
+		}
+		boolean allQueued = true;
+		for (int i = queued; i < size; i++) {
+			final Whisper<?> whisper = whispers.get(i);
+			final Delivery delivery = queueRetained(whisper);
+			if (listener != null)
+				listener.delivered(parent, whisper, delivery);
+			if (delivery != Delivery.DELIVERED)
+				allQueued = false;
+		}
+		return allQueued;
+	}
+
+	private final Delivery overflow(final Whisper<?> whisper) {
+		switch (config.overflowPolicy) {
+		case DROP_NEWEST:
+			return Delivery.DROPPED;
+		case FAIL:
+			return Delivery.REJECTED;
+		case HANDLER:
+			config.overflowHandler.overflow(parent, whisper);
+			return Delivery.OVERFLOWED;
+		case DROP_OLDEST: {
+			final Chest<Whisper<?>> chest = beginWrite();
+			try {
+				do {
+					final Whisper<?> oldest = chest.poll();
+					if (oldest != null) {
+						metrics.dropped();
+						oldest.release();
+					}
+				} while (!chest.offer(whisper));
+			} finally {
+				endWrite(chest);
+			}
+			schedule();
+			return Delivery.DELIVERED;
+		}
+		case BLOCK:
+			return waitRoom(whisper);
+		}
+		throw new IllegalArgumentException("Invalid OverflowPolicy");
+	}
+
+	/**
+	 * Wait (parking with backoff) until whisper is queued, timeout expires or shutdown
+	 */
+	private final Delivery waitRoom(final Whisper<?> whisper) {
+		final long deadline = System.nanoTime() + config.overflowTimeoutNanos;
+		long parkNanos = MIN_PARK_NANOS;
+		while (!offer(whisper)) {
+			if (gossipMonger.isShutdown() || Thread.currentThread().isInterrupted())
+				return Delivery.REJECTED;
+			if ((config.overflowTimeoutNanos > 0) && ((deadline - System.nanoTime()) <= 0))
+				return Delivery.TIMEOUT;
+			LockSupport.parkNanos(parkNanos);
+			if (parkNanos < MAX_PARK_NANOS)
+				parkNanos <<= 1;
+		}
+		schedule();
+		return Delivery.DELIVERED;
+	}
+
+	private final boolean offer(final Whisper<?> whisper) {
+		final Chest<Whisper<?>> chest = beginWrite();
+		try {
+			return chest.offer(whisper);
+		} finally {
+			endWrite(chest);
+		}
+	}
+
+	/**
+	 * Return chest for a producer, taking a lazy chest from pool if needed (must be followed by
+	 * endWrite)
+	 */
+	private final Chest<Whisper<?>> beginWrite() {
+		if (chestPool == null)
+			return chest;
+		for (;;) {
+			final Chest<Whisper<?>> chest = this.chest;
+			if (chest == null) {
+				final ChestPool.Leased empty = chestPool.acquire();
+				if (!CHEST.compareAndSet(this, null, empty))
+					chestPool.release(empty);
+				continue;
+			}
+			final ChestPool.Leased leased = (ChestPool.Leased) chest;
+			leased.enterWrite();
+			// Detached meanwhile, the drain loop only waits for producers that saw it attached
+			if (this.chest == chest)
+				return chest;
+			leased.exitWrite();
+		}
+	}
+
+	private final void endWrite(final Chest<Whisper<?>> chest) {
+		if (chestPool != null)
+			((ChestPool.Leased) chest).exitWrite();
+	}
+
+	/**
+	 * Return lazy chest to pool if drained (called by the drain loop before it ends)
+	 */
+	private final void releaseChest() {
+		if (stale != null)
+			return;
+		final Chest<Whisper<?>> chest = this.chest;
+		if ((chest == null) || !chest.isEmpty() || !CHEST.compareAndSet(this, chest, null))
+			return;
+		final ChestPool.Leased leased = (ChestPool.Leased) chest;
+		// Producers that got the chest before it was detached (later ones retry with other chest)
+		while (leased.hasWriters())
+			Thread.yield();
+		if (chest.isEmpty()) {
+			chestPool.release(leased);
+			return;
+		}
+		if (CHEST.compareAndSet(this, null, chest))
+			return;
+		// A new chest holds later messages, these are handled first on next run
+		stale = chest;
+	}
+
+	final boolean isEmpty() {
+		final Chest<Whisper<?>> pending = stale;
+		if ((pending != null) && !pending.isEmpty())
+			return false;
+		final Chest<Whisper<?>> chest = this.chest;
+		return ((chest == null) || chest.isEmpty());
+	}
+
+	/**
+	 * Submit this context to the pool, only if less than concurrency drain loops are scheduled
+	 */
+	final void schedule() {
+		wakeup();
+		for (;;) {
+			final int n = scheduled;
+			if (n >= config.concurrency)
+				return;
+			if (SCHEDULED.compareAndSet(this, n, n + 1)) {
+				boolean ok = false;
+				try {
+					gossipMonger.scheduleTalkerContext(this);
+					ok = true;
+				} finally {
+					// Rejected by dispatcher, a later message can schedule again
+					if (!ok)
+						SCHEDULED.decrementAndGet(this);
+				}
+				return;
+			}
+		}
 	}
 
-	final boolean queueMessage(final Whisper<?> whisper) {
-		return chest.offer(whisper);
+	/**
+	 * Unpark drain loop waiting with IdleStrategy.PARK
+	 */
+	final void wakeup() {
+		final Thread idle = idleThread;
+		if (idle != null)
+			LockSupport.unpark(idle);
 	}
 
 	public boolean needScheduling() {
-		return !(running || chest.isEmpty());
+		return !((scheduled > 0) || isEmpty());
 	}
 
 	@Override
 	public void run() {
-		if (running)
-			return;
 		try {
-			running = true;
 			if (log.isDebugEnabled())
 				log.debug("Task begin: " + toString());
-			if (chest.isEmpty())
-				return;
-			long idleBegin = System.currentTimeMillis();
-			Whisper<?> whisper = null;
-			while (!gossipMonger.isShutdown()) {
-				long now = System.currentTimeMillis();
-				while ((whisper = chest.poll()) != null) {
-					parent.newMessage(whisper);
-					now = System.currentTimeMillis();
-					idleBegin = now;
+			// Yield the thread to other Talkers after throughput messages (on shutdown drain all)
+			int budget = dispatcher.getThroughput();
+			final ArrayList<Whisper<?>> list = ((isBatch && (batch == null)) ? //
+					new ArrayList<Whisper<?>>(config.batchSize) : batch);
+			do {
+				final Chest<Whisper<?>> pending = stale;
+				if (pending != null) {
+					budget = (isBatch ? drainBatch(budget, list, pending) : drain(budget, pending));
+					if (!pending.isEmpty())
+						break;
+					stale = null;
+					chestPool.release((ChestPool.Leased) pending);
 				}
-//				Thread.yield();
-				final long idle = (now - idleBegin);
-				if (idle > 1000)
+				final Chest<Whisper<?>> chest = this.chest;
+				if (chest == null)
 					break;
-				if (idle > 100) {
-					try {
-						if (log.isDebugEnabled())
-							log.debug(getName() + " TalkerContext sleep()");
-						Thread.sleep(100);
-						now = System.currentTimeMillis();
-						idleBegin = now;
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						e.printStackTrace(System.out);
-						break;
+				budget = (isBatch ? drainBatch(budget, list, chest) : drain(budget, chest));
+			} while ((budget > 0) && (config.idleStrategy != IdleStrategy.RELEASE) && awaitMessages());
+		} finally {
+			try {
+				if (chestPool != null)
+					releaseChest();
+			} finally {
+				SCHEDULED.decrementAndGet(this);
+			}
+			if (log.isDebugEnabled())
+				log.debug("Task end: " + toString());
+			// Pending messages (budget exhausted or queued after last poll but before clear of flag)
+			if (!isEmpty())
+				schedule();
+		}
+	}
+
+	/**
+	 * Wait, with the IdleStrategy, until chest is not empty
+	 * 
+	 * @return false if timeout expires (or shutdown/interrupt)
+	 */
+	private final boolean awaitMessages() {
+		final long deadline = System.nanoTime() + config.idleTimeoutNanos;
+		long parkNanos = MIN_PARK_NANOS;
+		if (config.idleStrategy == IdleStrategy.PARK)
+			idleThread = Thread.currentThread();
+		try {
+			while (isEmpty()) {
+				final long remaining = deadline - System.nanoTime();
+				if (gossipMonger.isShutdown() || Thread.currentThread().isInterrupted()
+						|| ((config.idleTimeoutNanos > 0) && (remaining <= 0)))
+					return false;
+				switch (config.idleStrategy) {
+				case YIELD:
+					Thread.yield();
+					break;
+				case BACKOFF:
+					LockSupport.parkNanos(this, parkNanos);
+					if (parkNanos < MAX_PARK_NANOS)
+						parkNanos <<= 1;
+					break;
+				case PARK:
+					if (config.idleTimeoutNanos > 0) {
+						LockSupport.parkNanos(this, remaining);
+					} else {
+						LockSupport.park(this);
 					}
+					break;
+				default: // SPIN
+					break;
 				}
 			}
+			return true;
 		} finally {
-			running = false;
-			if (log.isDebugEnabled())
-				log.debug("Task end: " + toString());
+			if (config.idleStrategy == IdleStrategy.PARK)
+				idleThread = null;
+		}
+	}
+
+	/**
+	 * @return remaining budget
+	 */
+	private final int drain(int budget, final Chest<Whisper<?>> chest) {
+		Whisper<?> whisper = null;
+		int processed = 0;
+		try {
+			while (((budget-- > 0) || gossipMonger.isShutdown()) && ((whisper = chest.poll()) != null)) {
+				try {
+					whisper.checkLive();
+					processed++;
+					if (!whisper.isSampled()) {
+						parent.newMessage(whisper);
+					} else {
+						handleSampled(whisper);
+					}
+				} finally {
+					whisper.release();
+				}
+			}
+		} finally {
+			// One shared write per run, not per message
+			metrics.processed.add(processed);
+		}
+		return budget;
+	}
+
+	/**
+	 * Handle a message in the Thread of sender (INPLACE types)
+	 */
+	final void handleInplace(final Whisper<?> whisper) {
+		metrics.processed.increment();
+		if (!whisper.isSampled()) {
+			parent.newMessage(whisper);
+		} else {
+			handleSampled(whisper);
+		}
+	}
+
+	/**
+	 * Handle a message sampled for metrics, recording queue latency and handler time
+	 */
+	final void handleSampled(final Whisper<?> whisper) {
+		final long begin = System.nanoTime();
+		if (isQueued)
+			metrics.recordQueueLatency(begin - whisper.getSentNanos());
+		try {
+			parent.newMessage(whisper);
+		} finally {
+			metrics.recordHandlerTime(System.nanoTime() - begin);
+		}
+	}
+
+	/**
+	 * @return remaining budget
+	 */
+	private final int drainBatch(int budget, final ArrayList<Whisper<?>> batch,
+			final Chest<Whisper<?>> chest) {
+		final BatchTalker batchTalker = (BatchTalker) parent;
+		while ((budget > 0) || gossipMonger.isShutdown()) {
+			final int max = (budget > 0 ? Math.min(config.batchSize, budget) : config.batchSize);
+			final int n = chest.drainTo(batch, max);
+			if (n == 0)
+				break;
+			long begin = 0;
+			for (int i = 0; i < n; i++) {
+				final Whisper<?> whisper = batch.get(i);
+				if (whisper.isSampled()) {
+					if (begin == 0)
+						begin = System.nanoTime();
+					metrics.recordQueueLatency(begin - whisper.getSentNanos());
+				}
+			}
+			try {
+				batchTalker.newMessages(batch);
+			} finally {
+				if (begin != 0)
+					metrics.recordHandlerTime(System.nanoTime() - begin);
+				metrics.processed.add(n);
+				for (int i = 0; i < n; i++) {
+					batch.get(i).release();
+				}
+				batch.clear();
+			}
+			budget -= n;
 		}
+		return budget;
+	}
+
+	synchronized final void subscribed(final int id, final boolean exact) {
+		if (routeIds == null)
+			routeIds = new IntSet();
+		routeIds.add(id);
+		if (exact) {
+			if (exactIds == null)
+				exactIds = new IntSet();
+			exactIds.add(id);
+		}
+	}
+
+	synchronized final void unsubscribed(final int id) {
+		if ((routeIds != null) && routeIds.remove(id) && routeIds.isEmpty())
+			routeIds = null;
+		unsubscribedExact(id);
+	}
+
+	synchronized final void unsubscribedExact(final int id) {
+		if ((exactIds != null) && exactIds.remove(id) && exactIds.isEmpty())
+			exactIds = null;
+	}
+
+	synchronized final boolean isExact(final int id) {
+		return ((exactIds != null) && exactIds.contains(id));
+	}
+
+	synchronized final void filtered(final int id) {
+		if (filterIds == null)
+			filterIds = new IntSet();
+		filterIds.add(id);
+	}
+
+	synchronized final void unfiltered(final int id) {
+		if ((filterIds != null) && filterIds.remove(id) && filterIds.isEmpty())
+			filterIds = null;
 	}
 
 	String getName() {
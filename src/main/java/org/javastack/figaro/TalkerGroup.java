@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Group of Talkers registered under one Type/Name, each message is delivered to exactly one
+ * member, selected by consistent hash of a key of message (same key, same member: per-key order
+ * is kept). When a member joins or leaves only its share of keys is remapped.
+ * <p>
+ * The member is selected in sender Thread, there is no router Talker between.
+ * 
+ * @threadSafe
+ */
+public class TalkerGroup {
+	/**
+	 * Default virtual nodes of each member in the hash ring
+	 */
+	public static final int DEFAULT_REPLICAS = 128;
+	private final GossipMonger gossipMonger;
+	private final String name;
+	private final WhisperKey key;
+	private final int replicas;
+	private volatile Ring ring = new Ring(new long[0], new Talker[0]);
+	// Written under lock of this
+	private volatile Talker[] members = new Talker[0];
+
+	/**
+	 * Create group in default GossipMonger
+	 * 
+	 * @param name Type/Name of group
+	 * @param key of messages for affinity
+	 */
+	public TalkerGroup(final String name, final WhisperKey key) {
+		this(GossipMonger.getDefaultInstance(), name, key, DEFAULT_REPLICAS);
+	}
+
+	/**
+	 * Create group
+	 * 
+	 * @param gossipMonger
+	 * @param name Type/Name of group
+	 * @param key of messages for affinity
+	 * @param replicas virtual nodes of each member (more is better balanced)
+	 */
+	public TalkerGroup(final GossipMonger gossipMonger, final String name, final WhisperKey key,
+			final int replicas) {
+		if (key == null)
+			throw new IllegalArgumentException("Invalid WhisperKey");
+		if (replicas < 1)
+			throw new IllegalArgumentException("Invalid replicas: " + replicas);
+		this.gossipMonger = gossipMonger;
+		this.name = name;
+		this.key = key;
+		this.replicas = replicas;
+	}
+
+	/**
+	 * Return Type/Name of group
+	 * 
+	 * @return name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Register group in GossipMonger for incoming messages
+	 */
+	public void register() {
+		gossipMonger.registerGroup(name, this);
+	}
+
+	/**
+	 * Unregister group in GossipMonger
+	 */
+	public void unregister() {
+		gossipMonger.unregisterGroup(name, this);
+	}
+
+	/**
+	 * Add member to group (members are identified by name in the hash ring, so the names must be
+	 * distinct), its metrics are listed (and exported to JMX) as of a listening Talker
+	 * 
+	 * @param member
+	 * @throws IllegalArgumentException if other member has the same name
+	 */
+	public synchronized void join(final Talker member) {
+		for (final Talker t : members) {
+			if (t == member)
+				return;
+			if (t.getName().equals(member.getName()))
+				throw new IllegalArgumentException("Duplicate member name: " + member.getName());
+		}
+		members = Arrays.copyOf(members, members.length + 1);
+		members[members.length - 1] = member;
+		ring = build(members);
+		gossipMonger.registered(member);
+	}
+
+	/**
+	 * Remove member from group
+	 * 
+	 * @param member
+	 */
+	public synchronized void leave(final Talker member) {
+		for (int i = 0; i < members.length; i++) {
+			if (members[i] == member) {
+				final Talker[] next = new Talker[members.length - 1];
+				System.arraycopy(members, 0, next, 0, i);
+				System.arraycopy(members, i + 1, next, i, members.length - i - 1);
+				members = next;
+				ring = build(members);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Return the member that receives a message
+	 * 
+	 * @param whisper
+	 * @return member or null if group is empty
+	 */
+	public Talker select(final Whisper<?> whisper) {
+		final Ring r = ring;
+		if (r.talkers.length == 0)
+			return null;
+		final Object k = key.key(whisper);
+		final long hash = mix((k == null ? 0 : k.hashCode()));
+		// First point clockwise from hash
+		int i = Arrays.binarySearch(r.points, hash);
+		if (i < 0)
+			i = -i - 1;
+		return r.talkers[(i == r.points.length ? 0 : i)];
+	}
+
+	private Ring build(final Talker[] members) {
+		final TreeMap<Long, Talker> points = new TreeMap<Long, Talker>();
+		for (final Talker member : members) {
+			final long base = hash(member.getName());
+			for (int i = 0; i < replicas; i++) {
+				points.put(Long.valueOf(mix(base + (i * 0x9E3779B97F4A7C15L))), member);
+			}
+		}
+		final long[] p = new long[points.size()];
+		final Talker[] t = new Talker[points.size()];
+		int i = 0;
+		for (final Entry<Long, Talker> e : points.entrySet()) {
+			p[i] = e.getKey().longValue();
+			t[i] = e.getValue();
+			i++;
+		}
+		return new Ring(p, t);
+	}
+
+	/**
+	 * FNV-1a (64 bits) of name, stable between runs
+	 */
+	private static long hash(final String name) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < name.length(); i++) {
+			h ^= name.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Finalizer of MurmurHash3 (spread bits)
+	 */
+	private static long mix(long h) {
+		h ^= (h >>> 33);
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= (h >>> 33);
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		return "TalkerGroup[" + name + "]" + Arrays.toString(members);
+	}
+
+	/**
+	 * Immutable hash ring (points sorted)
+	 */
+	private static final class Ring {
+		final long[] points;
+		final Talker[] talkers;
+
+		Ring(final long[] points, final Talker[] talkers) {
+			this.points = points;
+			this.talkers = talkers;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Runtime metrics of a Talker, values are read live on each call
+ * <p>
+ * Counters are striped (no contention between senders), latencies are measured only for sampled
+ * messages (see {@link GossipMonger#setLatencySampling(int)}).
+ */
+public class TalkerMetrics implements TalkerMetricsMXBean {
+	private static final AtomicLongFieldUpdater<TalkerMetrics> DROPPED = //
+			AtomicLongFieldUpdater.newUpdater(TalkerMetrics.class, "dropped");
+	private final TalkerContext ctx;
+	final StripedCounter enqueued = new StripedCounter();
+	final StripedCounter processed = new StripedCounter();
+	private volatile long dropped = 0;
+	// Histograms are created on first sample (most Talkers never see one)
+	// From send to begin of handling
+	private volatile LatencyHistogram queueLatency = null;
+	// Duration of handling
+	private volatile LatencyHistogram handlerTime = null;
+
+	TalkerMetrics(final TalkerContext ctx) {
+		this.ctx = ctx;
+	}
+
+	final void dropped() {
+		DROPPED.incrementAndGet(this);
+	}
+
+	final void recordQueueLatency(final long nanos) {
+		LatencyHistogram histogram = queueLatency;
+		if (histogram == null) {
+			synchronized (this) {
+				if ((histogram = queueLatency) == null)
+					queueLatency = histogram = new LatencyHistogram();
+			}
+		}
+		histogram.record(nanos);
+	}
+
+	final void recordHandlerTime(final long nanos) {
+		LatencyHistogram histogram = handlerTime;
+		if (histogram == null) {
+			synchronized (this) {
+				if ((histogram = handlerTime) == null)
+					handlerTime = histogram = new LatencyHistogram();
+			}
+		}
+		histogram.record(nanos);
+	}
+
+	@Override
+	public String getName() {
+		return ctx.name;
+	}
+
+	@Override
+	public String getType() {
+		return ctx.type.name();
+	}
+
+	@Override
+	public long getEnqueued() {
+		return enqueued.sum();
+	}
+
+	@Override
+	public long getProcessed() {
+		return processed.sum();
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped;
+	}
+
+	@Override
+	public int getDepth() {
+		final Chest<Whisper<?>> chest = ctx.chest;
+		return (chest == null ? 0 : chest.size());
+	}
+
+	@Override
+	public long getSamples() {
+		final LatencyHistogram histogram = handlerTime;
+		return (histogram == null ? 0 : histogram.count());
+	}
+
+	@Override
+	public long getQueueLatencyP50() {
+		return percentile(queueLatency, 0.50);
+	}
+
+	@Override
+	public long getQueueLatencyP99() {
+		return percentile(queueLatency, 0.99);
+	}
+
+	@Override
+	public long getQueueLatencyMax() {
+		return max(queueLatency);
+	}
+
+	@Override
+	public long getHandlerTimeP50() {
+		return percentile(handlerTime, 0.50);
+	}
+
+	@Override
+	public long getHandlerTimeP99() {
+		return percentile(handlerTime, 0.99);
+	}
+
+	@Override
+	public long getHandlerTimeMax() {
+		return max(handlerTime);
+	}
+
+	private static long percentile(final LatencyHistogram histogram, final double percentile) {
+		return (histogram == null ? 0 : histogram.percentile(percentile));
+	}
+
+	private static long max(final LatencyHistogram histogram) {
+		return (histogram == null ? 0 : histogram.max());
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(160);
+		sb.append(getName()).append("[type=").append(getType());
+		sb.append(" enqueued=").append(getEnqueued());
+		sb.append(" processed=").append(getProcessed());
+		sb.append(" dropped=").append(getDropped());
+		sb.append(" depth=").append(getDepth());
+		sb.append(" samples=").append(getSamples());
+		sb.append(" queueP99=").append(getQueueLatencyP99()).append("ns");
+		sb.append(" handlerP99=").append(getHandlerTimeP99()).append("ns");
+		sb.append("]");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Runtime metrics of a Talker exposed by JMX (latencies are sampled and in nanoseconds)
+ * 
+ * @see GossipMonger#setJmxEnabled(boolean)
+ */
+public interface TalkerMetricsMXBean {
+	String getName();
+
+	String getType();
+
+	/**
+	 * Messages queued in the Talker (always 0 for INPLACE types)
+	 */
+	long getEnqueued();
+
+	/**
+	 * Messages handled by the Talker
+	 */
+	long getProcessed();
+
+	/**
+	 * Messages not delivered (dropped, rejected, timed out, overflowed or evicted)
+	 */
+	long getDropped();
+
+	/**
+	 * Messages waiting in the queue
+	 */
+	int getDepth();
+
+	long getSamples();
+
+	long getQueueLatencyP50();
+
+	long getQueueLatencyP99();
+
+	long getQueueLatencyMax();
+
+	long getHandlerTimeP50();
+
+	long getHandlerTimeP99();
+
+	long getHandlerTimeMax();
+}
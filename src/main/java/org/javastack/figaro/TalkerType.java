@@ -35,5 +35,25 @@ public enum TalkerType {
 	 * Messages are queued (queue is depth limited) for processes in a worker
 	 * Thread
 	 */
-	QUEUED_BOUNDED
+	QUEUED_BOUNDED,
+	/**
+	 * Messages are queued (queue is depth unlimited) for processes in a virtual
+	 * Thread (Java 21+), fallback to worker Thread on older JVMs
+	 */
+	QUEUED_VIRTUAL,
+	/**
+	 * Messages are queued (lock-free ring buffer, depth limited) for processes in a worker
+	 * Thread
+	 */
+	QUEUED_MPSC_BOUNDED,
+	/**
+	 * Messages are queued (lock-free linked chunks, depth unlimited) for processes in a worker
+	 * Thread
+	 */
+	QUEUED_MPSC_UNBOUNDED,
+	/**
+	 * Messages are send/received in current Thread (in-place) one at a time, contending senders
+	 * publish its messages and the sender holding the Talker handles them (flat combining)
+	 */
+	INPLACE_COMBINING
 }
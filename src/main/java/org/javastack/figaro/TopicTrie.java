@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trie of subscriptions to hierarchical topics (segments separated by dot), a segment "*" match
+ * exactly one segment and "#" match zero or more segments (orders.*.created, orders.#)
+ * <p>
+ * Used only on registration (not thread-safe, guarded by GossipMonger), messages are routed with
+ * recipients precomputed for each concrete topic. Concrete names are indexed in other trie (only
+ * after first pattern), to find the names of a pattern without scan all names.
+ */
+final class TopicTrie {
+	static final String ONE = "*";
+	static final String ANY = "#";
+	private final Node root = new Node();
+	private int size = 0;
+	private NameNode names = null;
+
+	static String[] split(final String topic) {
+		final ArrayList<String> segments = new ArrayList<String>();
+		int begin = 0, end;
+		while ((end = topic.indexOf('.', begin)) >= 0) {
+			segments.add(topic.substring(begin, end));
+			begin = end + 1;
+		}
+		segments.add(topic.substring(begin));
+		return segments.toArray(new String[segments.size()]);
+	}
+
+	/**
+	 * Check if name contains wildcards
+	 */
+	static boolean isPattern(final String name) {
+		for (final String segment : split(name)) {
+			if (ONE.equals(segment) || ANY.equals(segment))
+				return true;
+		}
+		return false;
+	}
+
+	boolean isEmpty() {
+		return (size == 0);
+	}
+
+	/**
+	 * Index concrete name (after {@link #indexNames(Iterable)})
+	 */
+	void addName(final String name) {
+		if (names == null)
+			return;
+		NameNode node = names;
+		for (final String segment : split(name)) {
+			NameNode child = node.children.get(segment);
+			if (child == null) {
+				child = new NameNode();
+				node.children.put(segment, child);
+			}
+			node = child;
+		}
+		node.name = name;
+	}
+
+	/**
+	 * Start index of concrete names
+	 */
+	void indexNames(final Iterable<String> all) {
+		if (names != null)
+			return;
+		names = new NameNode();
+		for (final String name : all) {
+			addName(name);
+		}
+	}
+
+	/**
+	 * Return indexed names matched by pattern
+	 */
+	Set<String> matchNames(final String pattern) {
+		final Set<String> out = new LinkedHashSet<String>();
+		if (names != null)
+			matchNames(names, split(pattern), 0, out);
+		return out;
+	}
+
+	private void matchNames(final NameNode node, final String[] pattern, final int i, final Set<String> out) {
+		if (i == pattern.length) {
+			if (node.name != null)
+				out.add(node.name);
+			return;
+		}
+		if (ANY.equals(pattern[i])) {
+			// Zero segments, or one and keep "#"
+			matchNames(node, pattern, i + 1, out);
+			for (final NameNode child : node.children.values()) {
+				matchNames(child, pattern, i, out);
+			}
+		} else if (ONE.equals(pattern[i])) {
+			for (final NameNode child : node.children.values()) {
+				matchNames(child, pattern, i + 1, out);
+			}
+		} else {
+			final NameNode child = node.children.get(pattern[i]);
+			if (child != null)
+				matchNames(child, pattern, i + 1, out);
+		}
+	}
+
+	/**
+	 * Add subscription
+	 * 
+	 * @return true if added (false if already subscribed)
+	 */
+	boolean add(final String pattern, final Talker talker) {
+		Node node = root;
+		for (final String segment : split(pattern)) {
+			node = node.child(segment, true);
+		}
+		if (!node.talkers.add(talker))
+			return false;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Remove subscription (empty nodes are pruned)
+	 * 
+	 * @return true if removed
+	 */
+	boolean remove(final String pattern, final Talker talker) {
+		if (!remove(root, split(pattern), 0, talker))
+			return false;
+		size--;
+		return true;
+	}
+
+	private boolean remove(final Node node, final String[] pattern, final int i, final Talker talker) {
+		if (i == pattern.length)
+			return node.talkers.remove(talker);
+		final Node child = node.child(pattern[i], false);
+		if ((child == null) || !remove(child, pattern, i + 1, talker))
+			return false;
+		if (child.isEmpty())
+			node.children.remove(pattern[i]);
+		return true;
+	}
+
+	/**
+	 * Return subscribers of patterns that match topic
+	 * 
+	 * @param topic concrete name
+	 * @return talkers (empty if none)
+	 */
+	Set<Talker> match(final String topic) {
+		final Set<Talker> talkers = new LinkedHashSet<Talker>();
+		if (size > 0)
+			match(root, split(topic), 0, talkers);
+		return talkers;
+	}
+
+	private void match(final Node node, final String[] topic, final int i, final Set<Talker> out) {
+		final Node any = node.children.get(ANY);
+		if (any != null) {
+			// Zero or more segments
+			for (int j = i; j <= topic.length; j++) {
+				match(any, topic, j, out);
+			}
+		}
+		if (i == topic.length) {
+			out.addAll(node.talkers);
+			return;
+		}
+		final Node exact = node.children.get(topic[i]);
+		if (exact != null)
+			match(exact, topic, i + 1, out);
+		final Node one = node.children.get(ONE);
+		if (one != null)
+			match(one, topic, i + 1, out);
+	}
+
+	private static final class Node {
+		final Map<String, Node> children = new HashMap<String, Node>(4);
+		final Set<Talker> talkers = new LinkedHashSet<Talker>(2);
+
+		Node child(final String segment, final boolean create) {
+			Node node = children.get(segment);
+			if ((node == null) && create) {
+				node = new Node();
+				children.put(segment, node);
+			}
+			return node;
+		}
+
+		boolean isEmpty() {
+			return talkers.isEmpty() && children.isEmpty();
+		}
+	}
+
+	private static final class NameNode {
+		final Map<String, NameNode> children = new HashMap<String, NameNode>(4);
+		String name = null;
+	}
+}
@@ -14,13 +14,41 @@
  */
 package org.javastack.figaro;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * This is a simple Message
+ * <p>
+ * Pooled instances (see {@link WhisperPool}) are reinitialized by the pool only, before being sent
+ * (the chest publishes them to recipients).
  */
 public class Whisper<T> {
-	public final Talker from;
-	public final Integer dest;
-	public final T msg;
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<Whisper> REFS = AtomicIntegerFieldUpdater.newUpdater(
+			Whisper.class, "refs");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<Whisper> SENT = AtomicLongFieldUpdater.newUpdater(
+			Whisper.class, "sentNanos");
+	private static final long UNSENT = 0;
+	private static final long NOT_SAMPLED = Long.MIN_VALUE;
+	// Rewritten only on reuse of pooled messages
+	private Talker from;
+	private int dest;
+	private T msg;
+	// Lane in a ChestPriority, fixed once sent
+	private int priority;
+	Destination destination;
+	// Pooling (null if not pooled)
+	final WhisperPool<T> pool;
+	private volatile int refs;
+	// Debug of pool
+	Throwable releasedAt;
+	/**
+	 * Send time of sampled messages for metrics, written once on first send (before publication to
+	 * recipients) and never changed, so a message forwarded or sent again keeps it
+	 */
+	private volatile long sentNanos;
 
 	/**
 	 * Create new message (from=null)
@@ -28,7 +56,7 @@ public class Whisper<T> {
 	 * @param dest
 	 * @param msg
 	 */
-	public Whisper(final Integer dest, final T msg) {
+	public Whisper(final int dest, final T msg) {
 		this(null, dest, msg);
 	}
 
@@ -49,10 +77,22 @@ public class Whisper<T> {
 	 * @param dest
 	 * @param msg
 	 */
-	public Whisper(final Talker from, final Integer dest, final T msg) {
+	public Whisper(final Talker from, final int dest, final T msg) {
 		this.from = from;
-		this.dest = (dest == null ? GossipType.NULL : dest);
+		this.dest = dest;
 		this.msg = msg;
+		this.destination = null;
+		this.pool = null;
+	}
+
+	/**
+	 * Create new message (from=null)
+	 * 
+	 * @param dest
+	 * @param msg
+	 */
+	public Whisper(final Destination dest, final T msg) {
+		this(null, dest, msg);
 	}
 
 	/**
@@ -62,8 +102,194 @@ public class Whisper<T> {
 	 * @param dest
 	 * @param msg
 	 */
+	public Whisper(final Talker from, final Destination dest, final T msg) {
+		this.from = from;
+		this.dest = dest.id;
+		this.msg = msg;
+		this.destination = dest;
+		this.pool = null;
+	}
+
+	/**
+	 * Create pooled message (empty)
+	 * 
+	 * @param pool
+	 */
+	Whisper(final WhisperPool<T> pool) {
+		this.from = null;
+		this.dest = GossipType.NULL;
+		this.msg = null;
+		this.pool = pool;
+	}
+
+	/**
+	 * Initialize pooled message (with one reference, owned by sender)
+	 */
+	final void init(final Talker from, final int dest, final Destination destination, final T msg) {
+		this.from = from;
+		this.dest = dest;
+		this.msg = msg;
+		this.destination = destination;
+		this.priority = 0;
+		this.releasedAt = null;
+		this.sentNanos = UNSENT;
+		this.refs = 1;
+	}
+
+	/**
+	 * Clear pooled message (do not retain references)
+	 */
+	final void clear() {
+		this.from = null;
+		this.dest = GossipType.NULL;
+		this.msg = null;
+		this.destination = null;
+	}
+
+	/**
+	 * Return the sender of message
+	 * 
+	 * @return from (can be null)
+	 */
+	public final Talker getFrom() {
+		return from;
+	}
+
+	/**
+	 * Return the id of destination
+	 * 
+	 * @return dest
+	 */
+	public final int getDest() {
+		return dest;
+	}
+
+	/**
+	 * Return the content of message
+	 * 
+	 * @return msg
+	 */
+	public final T getMsg() {
+		return msg;
+	}
+
+	final boolean isUnsent() {
+		return (sentNanos == UNSENT);
+	}
+
+	/**
+	 * Mark message as sent (only first call has effect)
+	 * 
+	 * @param sampled if true, store send time for metrics
+	 */
+	final void stamp(final boolean sampled) {
+		if (sentNanos != UNSENT)
+			return;
+		long now = (sampled ? System.nanoTime() : NOT_SAMPLED);
+		if (sampled && ((now == UNSENT) || (now == NOT_SAMPLED)))
+			now++;
+		SENT.lazySet(this, now);
+	}
+
+	final boolean isSampled() {
+		final long sent = sentNanos;
+		return ((sent != UNSENT) && (sent != NOT_SAMPLED));
+	}
+
+	/**
+	 * @return send time (only valid if isSampled)
+	 */
+	final long getSentNanos() {
+		return sentNanos;
+	}
+
+	/**
+	 * Set priority of message, used by {@link ChestPriority} (higher is handled first)
+	 * 
+	 * @param priority default 0
+	 * @return this
+	 * @throws IllegalStateException if message was sended
+	 */
+	public final Whisper<T> setPriority(final int priority) {
+		if (!isUnsent())
+			throw new IllegalStateException("Priority can not be changed after send");
+		this.priority = priority;
+		return this;
+	}
+
+	/**
+	 * Return priority of message
+	 * 
+	 * @return priority
+	 */
+	public final int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Return if this message is pooled (recycled after processing)
+	 * 
+	 * @return true if pooled
+	 */
+	public final boolean isPooled() {
+		return (pool != null);
+	}
+
+	/**
+	 * Add a reference to a pooled message, needed to keep or forward the message after
+	 * newMessage return (no-op if not pooled)
+	 * 
+	 * @throws IllegalStateException if message was released
+	 */
+	public final void retain() {
+		if (pool == null)
+			return;
+		for (;;) {
+			final int r = refs;
+			if (r <= 0)
+				throw new IllegalStateException("Whisper used after release", releasedAt);
+			if (REFS.compareAndSet(this, r, r + 1))
+				return;
+		}
+	}
+
+	/**
+	 * Release a reference to a pooled message, the last one return the message to pool (no-op if
+	 * not pooled)
+	 * 
+	 * @throws IllegalStateException if message was released
+	 */
+	public final void release() {
+		if (pool == null)
+			return;
+		final int r = REFS.decrementAndGet(this);
+		if (r == 0) {
+			pool.recycle(this);
+		} else if (r < 0) {
+			throw new IllegalStateException("Whisper released more times than retained", releasedAt);
+		}
+	}
+
+	/**
+	 * Check that a pooled message is not released
+	 * 
+	 * @throws IllegalStateException if message was released
+	 */
+	final void checkLive() {
+		if ((pool != null) && (refs <= 0))
+			throw new IllegalStateException("Whisper used after release", releasedAt);
+	}
+
+	/**
+	 * Create new message
+	 * 
+	 * @param from name of dest is resolved in its GossipMonger (default instance if null)
+	 * @param dest
+	 * @param msg
+	 */
 	public Whisper(final Talker from, final String dest, final T msg) {
-		this(from, GossipMonger.getDefaultInstance().getTypeIdByName(dest), msg);
+		this(from, (from == null ? GossipMonger.getDefaultInstance() : from.getState().gossipMonger)
+				.getTypeIdByName(dest), msg);
 	}
 
 	@Override
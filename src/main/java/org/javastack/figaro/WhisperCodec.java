@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Serialization of messages stored outside of heap (see {@link ChestPersistent})
+ */
+public interface WhisperCodec {
+	/**
+	 * Encode message to bytes
+	 * 
+	 * @param whisper
+	 * @return bytes
+	 * @throws IllegalArgumentException if message can not be encoded
+	 */
+	public byte[] encode(final Whisper<?> whisper);
+
+	/**
+	 * Decode message from bytes
+	 * 
+	 * @param data
+	 * @return message
+	 * @throws IllegalArgumentException if message can not be decoded
+	 */
+	public Whisper<?> decode(final byte[] data);
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Codec using Java Serialization of msg (must be Serializable), dest is kept as is and from is
+ * not stored (is null after decode)
+ * <p>
+ * Note: dest ids are only stable between restarts if names are registered in the same order.
+ */
+public class WhisperCodecSerializable implements WhisperCodec {
+	@Override
+	public byte[] encode(final Whisper<?> whisper) {
+		try {
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+			final ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeInt(whisper.getDest());
+			oos.writeObject(whisper.getMsg());
+			oos.close();
+			return bos.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to encode: " + whisper, e);
+		}
+	}
+
+	@Override
+	public Whisper<?> decode(final byte[] data) {
+		try {
+			final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+			final int dest = ois.readInt();
+			final Object msg = ois.readObject();
+			ois.close();
+			return new Whisper<Object>(dest, msg);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to decode", e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unable to decode", e);
+		}
+	}
+}
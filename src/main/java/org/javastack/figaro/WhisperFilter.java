@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Condition on a message for a filtered subscription, evaluated in sender Thread before queueing
+ * 
+ * @see AbstractTalker#registerFilter(String, WhisperFilter)
+ */
+public interface WhisperFilter {
+	/**
+	 * Check if message is accepted by the subscriber
+	 * 
+	 * @param whisper
+	 * @return true to deliver
+	 */
+	public boolean accept(final Whisper<?> whisper);
+}
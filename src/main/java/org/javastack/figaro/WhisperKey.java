@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+/**
+ * Extract a field of a message for indexed equality filters (subscribers of same WhisperKey
+ * instance share a hash index from value to recipients)
+ * 
+ * @see AbstractTalker#registerFilter(String, WhisperKey, Object)
+ */
+public interface WhisperKey {
+	/**
+	 * Return the key of message (must have consistent equals/hashCode)
+	 * 
+	 * @param whisper
+	 * @return key (null match no subscriber)
+	 */
+	public Object key(final Whisper<?> whisper);
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of reusable messages, for zero-allocation messaging
+ * <p>
+ * A pooled Whisper is reference counted: {@link #acquire(Talker, int, Object)} return it with one
+ * reference, owned by the sender, that is passed to GossipMonger on send (do not use the message
+ * after send). GossipMonger add a reference for each queued recipient, released when its
+ * newMessage/newMessages return. The message is returned to pool after the last release. A
+ * Talker that need to keep or forward a received pooled message must call
+ * {@link Whisper#retain()} (and later {@link Whisper#release()} if not forwarded).
+ * <p>
+ * Each Thread has a small local cache, backed by a shared bounded pool.
+ * <p>
+ * In debug mode messages are never reused: released messages are cleared and any later use by
+ * GossipMonger (send, queue, retain, release) throws IllegalStateException with the stack trace
+ * of release.
+ * 
+ * @threadSafe
+ */
+public class WhisperPool<T> {
+	private static final int LOCAL_SIZE = 32;
+	private final ArrayBlockingQueue<Whisper<T>> shared;
+	private final ThreadLocal<ArrayDeque<Whisper<T>>> local = new ThreadLocal<ArrayDeque<Whisper<T>>>() {
+		@Override
+		protected ArrayDeque<Whisper<T>> initialValue() {
+			return new ArrayDeque<Whisper<T>>(LOCAL_SIZE);
+		}
+	};
+	private final boolean debug;
+
+	/**
+	 * Create pool
+	 * 
+	 * @param capacity maximum messages in the shared pool
+	 */
+	public WhisperPool(final int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * Create pool
+	 * 
+	 * @param capacity maximum messages in the shared pool
+	 * @param debug detect use after release (messages are not reused)
+	 */
+	public WhisperPool(final int capacity, final boolean debug) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		this.shared = new ArrayBlockingQueue<Whisper<T>>(capacity);
+		this.debug = debug;
+	}
+
+	/**
+	 * Get a message from pool (or a new one if pool is empty)
+	 * 
+	 * @param from
+	 * @param dest
+	 * @param msg
+	 * @return message with one reference
+	 */
+	public Whisper<T> acquire(final Talker from, final int dest, final T msg) {
+		final Whisper<T> whisper = poll();
+		whisper.init(from, dest, null, msg);
+		return whisper;
+	}
+
+	/**
+	 * Get a message from pool (or a new one if pool is empty)
+	 * 
+	 * @param from
+	 * @param dest
+	 * @param msg
+	 * @return message with one reference
+	 */
+	public Whisper<T> acquire(final Talker from, final Destination dest, final T msg) {
+		final Whisper<T> whisper = poll();
+		whisper.init(from, dest.id, dest, msg);
+		return whisper;
+	}
+
+	private Whisper<T> poll() {
+		if (!debug) {
+			final ArrayDeque<Whisper<T>> cache = local.get();
+			Whisper<T> whisper = cache.pollFirst();
+			if ((whisper == null) && (shared.drainTo(cache, LOCAL_SIZE) > 0))
+				whisper = cache.pollFirst();
+			if (whisper != null)
+				return whisper;
+		}
+		return new Whisper<T>(this);
+	}
+
+	void recycle(final Whisper<T> whisper) {
+		whisper.clear();
+		if (debug) {
+			whisper.releasedAt = new Throwable("Whisper released here");
+			return;
+		}
+		final ArrayDeque<Whisper<T>> cache = local.get();
+		if (cache.size() >= LOCAL_SIZE) {
+			// Move half to shared pool (if full, drop to GC)
+			for (int i = 0; i < (LOCAL_SIZE >> 1); i++) {
+				shared.offer(cache.pollLast());
+			}
+		}
+		cache.addFirst(whisper);
+	}
+
+	/**
+	 * Return if debug mode is enabled
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isDebug() {
+		return debug;
+	}
+}
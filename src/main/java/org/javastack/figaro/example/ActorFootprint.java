@@ -0,0 +1,92 @@
+package org.javastack.figaro.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javastack.figaro.AbstractTalker;
+import org.javastack.figaro.GossipMonger;
+import org.javastack.figaro.TalkerConfig;
+import org.javastack.figaro.TalkerType;
+import org.javastack.figaro.Whisper;
+
+/**
+ * Create many registered Talkers (one per device) and report heap bytes per actor, idle and after
+ * each one received a message. Usage: ActorFootprint [count] (default 1000000, eager chests need a
+ * big heap: -Xmx4g)
+ */
+public class ActorFootprint {
+	private static final AtomicLong received = new AtomicLong();
+
+	public static void main(final String[] args) throws Throwable {
+		final int count = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+		doTest(TalkerType.QUEUED_UNBOUNDED, false, count);
+		doTest(TalkerType.QUEUED_UNBOUNDED, true, count);
+		doTest(TalkerType.QUEUED_BOUNDED, false, count);
+		doTest(TalkerType.QUEUED_BOUNDED, true, count);
+	}
+
+	public static void doTest(final TalkerType type, final boolean lazyChest, final int count)
+			throws Throwable {
+		final String mode = type + (lazyChest ? " lazy" : " eager");
+		final GossipMonger monger = new GossipMonger();
+		final TalkerConfig config = new TalkerConfig().setLazyChest(lazyChest);
+		final long base = usedHeap();
+		DeviceTalker[] devices = new DeviceTalker[count];
+		try {
+			for (int i = 0; i < count; i++) {
+				devices[i] = new DeviceTalker(monger, "device-" + i, type, config);
+				devices[i].registerListener();
+			}
+		} catch (OutOfMemoryError e) {
+			devices = null;
+			monger.shutdown();
+			System.out.println(mode + " OutOfMemoryError (increase -Xmx or reduce count)");
+			return;
+		}
+		final long idle = usedHeap() - base;
+		//
+		// One message to each actor, wait until all are processed
+		received.set(0);
+		final DeviceTalker sender = new DeviceTalker(monger, "sender", TalkerType.INPLACE_UNSYNC,
+				new TalkerConfig());
+		final long begin = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			sender.sendMessage(new Whisper<Integer>(sender, devices[i].getName(), Integer.valueOf(i)));
+		}
+		while (received.get() < count) {
+			Thread.sleep(1);
+		}
+		final long end = System.currentTimeMillis();
+		final long drained = usedHeap() - base;
+		System.out.println(mode + " actors=" + count + " bytes/actor idle=" + (idle / count)
+				+ " drained=" + (drained / count) + " msg/s="
+				+ (count * 1000L / Math.max(end - begin, 1)));
+		for (final DeviceTalker device : devices) {
+			device.unregisterListener();
+		}
+		devices = null;
+		monger.shutdown();
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		final Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(50);
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+
+	public static class DeviceTalker extends AbstractTalker {
+		public DeviceTalker(final GossipMonger monger, final String name, final TalkerType type,
+				final TalkerConfig config) {
+			super(monger, name, type, config);
+		}
+
+		@Override
+		public void newMessage(final Whisper<?> whisper) {
+			received.incrementAndGet();
+		}
+	}
+}
@@ -23,8 +23,12 @@ public class Benchmark {
 			while (processors > 0) {
 				doTest(TalkerType.INPLACE_UNSYNC, processors);
 				doTest(TalkerType.INPLACE_SYNC, processors);
+				doTest(TalkerType.INPLACE_COMBINING, processors);
 				doTest(TalkerType.QUEUED_UNBOUNDED, processors);
 				doTest(TalkerType.QUEUED_BOUNDED, processors);
+				doTest(TalkerType.QUEUED_VIRTUAL, processors);
+				doTest(TalkerType.QUEUED_MPSC_UNBOUNDED, processors);
+				doTest(TalkerType.QUEUED_MPSC_BOUNDED, processors);
 				processors >>= 1;
 				System.out.println();
 				break;
@@ -102,11 +106,11 @@ public class Benchmark {
 
 		@Override
 		public void newMessage(final Whisper<?> whisper) {
-			if (whisper.msg instanceof Integer) {
-				AtomicInteger i = h.get(whisper.msg);
+			if (whisper.getMsg() instanceof Integer) {
+				AtomicInteger i = h.get(whisper.getMsg());
 				if (i == null) {
 					i = new AtomicInteger();
-					h.put((Integer) whisper.msg, i);
+					h.put((Integer) whisper.getMsg(), i);
 				}
 				i.incrementAndGet();
 			} else {
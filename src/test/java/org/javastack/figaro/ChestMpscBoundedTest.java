@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChestMpscBoundedTest {
+	static final int PRODUCERS = 4;
+	static final int MESSAGES = 100000;
+
+	@Test
+	public void testCapacity() {
+		final ChestMpscBounded<Whisper<Integer>> chest = new ChestMpscBounded<Whisper<Integer>>(5);
+		for (int i = 0; i < 8; i++) {
+			assertTrue(chest.offer(whisper(0, i)));
+		}
+		assertFalse(chest.offer(whisper(0, 8)));
+		assertEquals(8, chest.size());
+		assertEquals(0, chest.poll().getMsg().intValue());
+		assertTrue(chest.offer(whisper(0, 8)));
+		assertEquals(8, chest.size());
+	}
+
+	@Test
+	public void testWraparound() {
+		final ChestMpscBounded<Whisper<Integer>> chest = new ChestMpscBounded<Whisper<Integer>>(4);
+		int next = 0;
+		int expected = 0;
+		for (int round = 0; round < 1000; round++) {
+			for (int i = 0; i < 3; i++) {
+				assertTrue(chest.offer(whisper(0, next++)));
+			}
+			for (int i = 0; i < 3; i++) {
+				assertEquals(expected++, chest.poll().getMsg().intValue());
+			}
+		}
+		assertNull(chest.poll());
+		assertTrue(chest.isEmpty());
+	}
+
+	@Test
+	public void testOfferAllPartial() {
+		final ChestMpscBounded<Whisper<Integer>> chest = new ChestMpscBounded<Whisper<Integer>>(4);
+		assertTrue(chest.offer(whisper(0, 0)));
+		final List<Whisper<Integer>> values = new ArrayList<Whisper<Integer>>();
+		for (int i = 1; i <= 5; i++) {
+			values.add(whisper(0, i));
+		}
+		assertEquals(3, chest.offerAll(values));
+		assertEquals(0, chest.offerAll(values));
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, chest.poll().getMsg().intValue());
+		}
+		assertNull(chest.poll());
+	}
+
+	@Test
+	public void testDrainTo() {
+		final ChestMpscBounded<Whisper<Integer>> chest = new ChestMpscBounded<Whisper<Integer>>(8);
+		for (int round = 0; round < 100; round++) {
+			for (int i = 0; i < 6; i++) {
+				assertTrue(chest.offer(whisper(0, i)));
+			}
+			final List<Whisper<Integer>> sink = new ArrayList<Whisper<Integer>>();
+			assertEquals(4, chest.drainTo(sink, 4));
+			assertEquals(2, chest.drainTo(sink, 4));
+			assertEquals(0, chest.drainTo(sink, 4));
+			for (int i = 0; i < 6; i++) {
+				assertEquals(i, sink.get(i).getMsg().intValue());
+			}
+		}
+		assertTrue(chest.isEmpty());
+	}
+
+	@Test
+	public void testMultiProducer() throws InterruptedException {
+		final ChestMpscBounded<Whisper<Integer>> chest = new ChestMpscBounded<Whisper<Integer>>(64);
+		final Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++) {
+			final int producer = p;
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					final List<Whisper<Integer>> values = new ArrayList<Whisper<Integer>>();
+					int i = 0;
+					while (i < MESSAGES) {
+						// Mix single and bulk offers
+						if ((i & 1) == 0) {
+							if (chest.offer(whisper(producer, i)))
+								i++;
+							else
+								Thread.yield();
+						} else {
+							values.clear();
+							for (int j = i; j < Math.min(i + 7, MESSAGES); j++) {
+								values.add(whisper(producer, j));
+							}
+							final int n = chest.offerAll(values);
+							if (n == 0)
+								Thread.yield();
+							i += n;
+						}
+					}
+				}
+			};
+			producers[p].start();
+		}
+		assertReceived(chest);
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		assertTrue(chest.isEmpty());
+	}
+
+	static void assertReceived(final Chest<Whisper<Integer>> chest) {
+		final int[] next = new int[PRODUCERS];
+		final List<Whisper<Integer>> sink = new ArrayList<Whisper<Integer>>();
+		int received = 0;
+		while (received < PRODUCERS * MESSAGES) {
+			final Whisper<Integer> whisper;
+			if ((received & 1) == 0) {
+				whisper = chest.poll();
+			} else {
+				sink.clear();
+				whisper = (chest.drainTo(sink, 1) == 1 ? sink.get(0) : null);
+			}
+			if (whisper == null) {
+				Thread.yield();
+				continue;
+			}
+			// Order of each producer is kept
+			assertEquals(next[whisper.getDest()]++, whisper.getMsg().intValue());
+			received++;
+		}
+		for (int p = 0; p < PRODUCERS; p++) {
+			assertEquals(MESSAGES, next[p]);
+		}
+	}
+
+	static Whisper<Integer> whisper(final int producer, final int seq) {
+		return new Whisper<Integer>(producer, Integer.valueOf(seq));
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.javastack.figaro.ChestMpscBoundedTest.MESSAGES;
+import static org.javastack.figaro.ChestMpscBoundedTest.PRODUCERS;
+import static org.javastack.figaro.ChestMpscBoundedTest.assertReceived;
+import static org.javastack.figaro.ChestMpscBoundedTest.whisper;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChestMpscUnboundedTest {
+	@Test
+	public void testChunkLinking() {
+		final ChestMpscUnbounded<Whisper<Integer>> chest = new ChestMpscUnbounded<Whisper<Integer>>(4);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(chest.offer(whisper(0, i)));
+		}
+		assertEquals(1000, chest.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, chest.poll().getMsg().intValue());
+		}
+		assertNull(chest.poll());
+		assertTrue(chest.isEmpty());
+	}
+
+	@Test
+	public void testOfferAllAndDrainTo() {
+		final ChestMpscUnbounded<Whisper<Integer>> chest = new ChestMpscUnbounded<Whisper<Integer>>(4);
+		final List<Whisper<Integer>> values = new ArrayList<Whisper<Integer>>();
+		for (int i = 0; i < 10; i++) {
+			values.add(whisper(0, i));
+		}
+		for (int round = 0; round < 100; round++) {
+			// Bulk offer spans several chunks
+			assertEquals(10, chest.offerAll(values));
+			final List<Whisper<Integer>> sink = new ArrayList<Whisper<Integer>>();
+			assertEquals(7, chest.drainTo(sink, 7));
+			assertEquals(3, chest.drainTo(sink, 7));
+			assertEquals(0, chest.drainTo(sink, 7));
+			for (int i = 0; i < 10; i++) {
+				assertEquals(i, sink.get(i).getMsg().intValue());
+			}
+		}
+		assertTrue(chest.isEmpty());
+	}
+
+	@Test
+	public void testMultiProducer() throws InterruptedException {
+		final ChestMpscUnbounded<Whisper<Integer>> chest = new ChestMpscUnbounded<Whisper<Integer>>(16);
+		final Thread[] producers = new Thread[PRODUCERS];
+		for (int p = 0; p < PRODUCERS; p++) {
+			final int producer = p;
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					final List<Whisper<Integer>> values = new ArrayList<Whisper<Integer>>();
+					int i = 0;
+					while (i < MESSAGES) {
+						// Mix single and bulk offers
+						if ((i & 1) == 0) {
+							chest.offer(whisper(producer, i++));
+						} else {
+							values.clear();
+							for (int j = i; j < Math.min(i + 7, MESSAGES); j++) {
+								values.add(whisper(producer, j));
+							}
+							i += chest.offerAll(values);
+						}
+					}
+				}
+			};
+			producers[p].start();
+		}
+		assertReceived(chest);
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		assertTrue(chest.isEmpty());
+	}
+}
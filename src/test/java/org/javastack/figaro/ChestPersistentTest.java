@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.javastack.figaro.IntCodec.EMPTY;
+import static org.javastack.figaro.IntCodec.INVALID;
+import static org.javastack.figaro.IntCodec.value;
+import static org.javastack.figaro.IntCodec.whisper;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChestPersistentTest {
+	// Room for 7 records of 4 bytes in each segment
+	private static final int SEGMENT_SIZE = 64;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecovery() throws Exception {
+		final File dir = folder.newFolder();
+		ChestPersistent chest = new ChestPersistent(dir, new IntCodec(), SEGMENT_SIZE);
+		for (int i = 0; i < 50; i++) {
+			chest.offer(whisper(i));
+		}
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i, value(chest.poll()));
+		}
+		chest.close();
+		// Pending records are resumed from cursor (across segments)
+		chest = new ChestPersistent(dir, new IntCodec(), SEGMENT_SIZE);
+		assertEquals(30, chest.size());
+		for (int i = 20; i < 50; i++) {
+			assertEquals(i, value(chest.poll()));
+		}
+		assertNull(chest.poll());
+		// Appends continue after recovered records
+		chest.offer(whisper(50));
+		chest.close();
+		chest = new ChestPersistent(dir, new IntCodec(), SEGMENT_SIZE);
+		assertEquals(1, chest.size());
+		assertEquals(50, value(chest.poll()));
+		chest.close();
+	}
+
+	@Test
+	public void testEmptyRecordRejected() throws Exception {
+		final File dir = folder.newFolder();
+		ChestPersistent chest = new ChestPersistent(dir, new IntCodec(), SEGMENT_SIZE);
+		chest.offer(whisper(1));
+		try {
+			chest.offer(whisper(EMPTY));
+			fail("Empty record accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		chest.offer(whisper(2));
+		chest.close();
+		chest = new ChestPersistent(dir, new IntCodec(), SEGMENT_SIZE);
+		assertEquals(2, chest.size());
+		assertEquals(1, value(chest.poll()));
+		assertEquals(2, value(chest.poll()));
+		chest.close();
+	}
+
+	@Test
+	public void testOfferAllStopsAtFailure() throws Exception {
+		final ChestPersistent chest = new ChestPersistent(folder.newFolder(), new IntCodec(),
+				SEGMENT_SIZE);
+		final List<Whisper<?>> values = new ArrayList<Whisper<?>>();
+		values.add(whisper(1));
+		values.add(whisper(2));
+		values.add(whisper(INVALID));
+		values.add(whisper(3));
+		assertEquals(2, chest.offerAll(values));
+		try {
+			chest.offerAll(values.subList(2, 4));
+			fail("Invalid record accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(2, chest.size());
+		chest.close();
+	}
+
+	@Test
+	public void testClosedChestDoesNotBreakSend() throws Exception {
+		final ChestPersistent chest = new ChestPersistent(folder.newFolder(), new IntCodec(),
+				SEGMENT_SIZE);
+		chest.close();
+		final GossipMonger monger = new GossipMonger();
+		try {
+			final AtomicInteger received = new AtomicInteger();
+			final Counter persistent = new Counter(monger, "persistent", TalkerType.QUEUED_UNBOUNDED,
+					new TalkerConfig().setChest(chest), received);
+			final Counter inplace = new Counter(monger, "inplace", TalkerType.INPLACE_UNSYNC,
+					new TalkerConfig(), received);
+			persistent.registerExtraType("topic");
+			inplace.registerExtraType("topic");
+			final List<Delivery> deliveries = new ArrayList<Delivery>();
+			final Whisper<Integer> whisper = new Whisper<Integer>(monger.getDestination("topic"),
+					Integer.valueOf(1));
+			final boolean sended = monger.send(whisper, new DeliveryListener() {
+				@Override
+				public void delivered(final Talker talker, final Whisper<?> whisper,
+						final Delivery delivery) {
+					deliveries.add(delivery);
+				}
+			});
+			assertFalse(sended);
+			assertEquals(1, received.get());
+			assertEquals(2, deliveries.size());
+			assertEquals(1, monger.getMetrics(persistent).getDropped());
+		} finally {
+			monger.shutdown();
+		}
+	}
+
+	private static class Counter extends AbstractTalker {
+		private final AtomicInteger received;
+
+		public Counter(final GossipMonger monger, final String name, final TalkerType type,
+				final TalkerConfig config, final AtomicInteger received) {
+			super(monger, name, type, config);
+			this.received = received;
+		}
+
+		@Override
+		public void newMessage(final Whisper<?> whisper) {
+			received.incrementAndGet();
+		}
+	}
+}
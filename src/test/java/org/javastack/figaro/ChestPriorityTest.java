@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ChestPriorityTest {
+	@Test
+	public void testHigherLaneFirst() {
+		final ChestPriority chest = new ChestPriority(3);
+		chest.offer(whisper(1, 0));
+		chest.offer(whisper(2, 2));
+		chest.offer(whisper(3, 1));
+		// Out of range priorities go to the first or last lane
+		chest.offer(whisper(4, 9));
+		chest.offer(whisper(5, -1));
+		assertEquals(5, chest.size());
+		assertEquals(2, chest.poll().getMsg());
+		assertEquals(4, chest.poll().getMsg());
+		assertEquals(3, chest.poll().getMsg());
+		assertEquals(1, chest.poll().getMsg());
+		assertEquals(5, chest.poll().getMsg());
+		assertNull(chest.poll());
+	}
+
+	@Test
+	public void testPriorityFixedAfterSend() {
+		final GossipMonger monger = new GossipMonger();
+		try {
+			final Whisper<Integer> whisper = whisper(1, 1);
+			monger.send(whisper);
+			try {
+				whisper.setPriority(0);
+				fail("Priority changed after send");
+			} catch (IllegalStateException e) {
+				// Expected
+			}
+			assertEquals(1, whisper.getPriority());
+		} finally {
+			monger.shutdown();
+		}
+	}
+
+	private static Whisper<Integer> whisper(final int value, final int priority) {
+		return new Whisper<Integer>(GossipType.NULL, Integer.valueOf(value)).setPriority(priority);
+	}
+}
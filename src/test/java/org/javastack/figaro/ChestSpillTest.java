@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.javastack.figaro.IntCodec.value;
+import static org.javastack.figaro.IntCodec.whisper;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChestSpillTest {
+	private static final int MEMORY = 4;
+	// A few records of 4 bytes in each segment
+	private static final int SEGMENT_SIZE = 64;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSpillInOrder() throws Exception {
+		final ChestSpill chest = new ChestSpill(folder.newFolder(), new IntCodec(), MEMORY,
+				SEGMENT_SIZE);
+		int next = 0;
+		int expected = 0;
+		for (int round = 0; round < 10; round++) {
+			// Disk keeps order after memory, also while consumer catches up
+			for (int i = 0; i < 50; i++) {
+				assertTrue(chest.offer(whisper(next++)));
+			}
+			assertEquals(50, chest.size());
+			for (int i = 0; i < 50; i++) {
+				assertEquals(expected++, value(chest.poll()));
+			}
+			assertNull(chest.poll());
+			assertTrue(chest.isEmpty());
+		}
+		chest.close();
+	}
+
+	@Test
+	public void testCloseWithSpilled() throws Exception {
+		final File dir = folder.newFolder();
+		final ChestSpill chest = new ChestSpill(dir, new IntCodec(), MEMORY, SEGMENT_SIZE);
+		for (int i = 0; i < 20; i++) {
+			chest.offer(whisper(i));
+		}
+		assertEquals(0, value(chest.poll()));
+		chest.close();
+		assertEquals(0, dir.list().length);
+		// Spilled messages are lost, memory is still polled
+		assertEquals(MEMORY - 1, chest.size());
+		assertFalse(chest.isEmpty());
+		for (int i = 1; i < MEMORY; i++) {
+			assertEquals(i, value(chest.poll()));
+		}
+		assertNull(chest.poll());
+		assertTrue(chest.isEmpty());
+		assertEquals(0, chest.size());
+		try {
+			chest.offer(whisper(20));
+			fail("Offer accepted after close");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+}
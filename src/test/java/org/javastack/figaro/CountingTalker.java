@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Talker (INPLACE_UNSYNC) that counts received messages
+ */
+class CountingTalker extends AbstractTalker {
+	final AtomicInteger received = new AtomicInteger();
+
+	CountingTalker(final GossipMonger monger, final String name) {
+		super(monger, name, TalkerType.INPLACE_UNSYNC);
+	}
+
+	@Override
+	public void newMessage(final Whisper<?> whisper) {
+		received.incrementAndGet();
+	}
+}
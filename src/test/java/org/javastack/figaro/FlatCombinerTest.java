@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FlatCombinerTest {
+	private static final int SENDERS = 4;
+	private static final int MESSAGES = 50000;
+	// Each sender fails one of each FAIL_EVERY messages
+	private static final int FAIL_EVERY = 100;
+
+	private final GossipMonger monger = new GossipMonger();
+
+	@After
+	public void shutdown() {
+		monger.shutdown();
+	}
+
+	@Test
+	public void testConcurrentSenders() throws Throwable {
+		final Combining talker = new Combining(monger);
+		talker.registerListener();
+		final Destination dest = monger.getDestination(talker.getName());
+		final ConcurrentHashMap<Integer, Boolean> handled = new ConcurrentHashMap<Integer, Boolean>();
+		talker.handled = handled;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicInteger errors = new AtomicInteger();
+		final Thread[] senders = new Thread[SENDERS];
+		for (int s = 0; s < SENDERS; s++) {
+			final int sender = s;
+			senders[s] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < MESSAGES; i++) {
+							final Integer value = Integer.valueOf((sender * MESSAGES) + i);
+							final boolean fail = ((i % FAIL_EVERY) == 0);
+							try {
+								monger.send(new Whisper<Integer>(dest, fail ? -value - 1 : value));
+								assertTrue("Failure not rethrown", !fail);
+							} catch (IllegalStateException e) {
+								// The error of this message, not of other sender
+								assertTrue("Unexpected failure", fail);
+								assertEquals(String.valueOf(-value - 1), e.getMessage());
+								errors.incrementAndGet();
+								continue;
+							}
+							// Handled before send returns
+							assertTrue("Not handled", handled.containsKey(value));
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			};
+			senders[s].start();
+		}
+		for (final Thread sender : senders) {
+			sender.join();
+		}
+		if (failure.get() != null)
+			throw failure.get();
+		assertEquals(SENDERS * MESSAGES, talker.count);
+		assertEquals(SENDERS * (MESSAGES / FAIL_EVERY), errors.get());
+		assertEquals(0, talker.overlaps.get());
+	}
+
+	@Test
+	public void testUncontended() {
+		final Combining talker = new Combining(monger);
+		talker.registerListener();
+		final Destination dest = monger.getDestination(talker.getName());
+		for (int i = 0; i < 1000; i++) {
+			monger.send(new Whisper<Integer>(dest, Integer.valueOf(i)));
+			assertEquals(i + 1, talker.count);
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testNestedAcrossMongers() throws Throwable {
+		final GossipMonger other = new GossipMonger();
+		try {
+			final Combining inner = new Combining(other);
+			inner.registerListener();
+			final Destination innerDest = other.getDestination(inner.getName());
+			// Handler of outer sends in-place to a combining talker of other monger
+			final Combining outer = new Combining(monger) {
+				@Override
+				public void newMessage(final Whisper<?> whisper) {
+					super.newMessage(whisper);
+					other.send(new Whisper<Integer>(innerDest, (Integer) whisper.getMsg()));
+				}
+			};
+			outer.registerListener();
+			final Destination outerDest = monger.getDestination(outer.getName());
+			final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			final Thread[] senders = new Thread[SENDERS * 2];
+			for (int s = 0; s < senders.length; s++) {
+				final boolean nested = ((s & 1) == 0);
+				senders[s] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int i = 0; i < MESSAGES; i++) {
+								final Integer value = Integer.valueOf(i);
+								if (nested) {
+									monger.send(new Whisper<Integer>(outerDest, value));
+								} else {
+									other.send(new Whisper<Integer>(innerDest, value));
+								}
+							}
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						}
+					}
+				};
+				senders[s].start();
+			}
+			for (final Thread sender : senders) {
+				sender.join();
+			}
+			if (failure.get() != null)
+				throw failure.get();
+			assertEquals(SENDERS * MESSAGES, outer.count);
+			assertEquals(SENDERS * MESSAGES * 2, inner.count);
+			assertEquals(0, outer.overlaps.get());
+			assertEquals(0, inner.overlaps.get());
+		} finally {
+			other.shutdown();
+		}
+	}
+
+	private static class Combining extends AbstractTalker {
+		private final AtomicInteger inside = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		// Plain field, handling is serialized
+		int count = 0;
+		ConcurrentHashMap<Integer, Boolean> handled = null;
+
+		Combining(final GossipMonger monger) {
+			super(monger, "combining", TalkerType.INPLACE_COMBINING);
+		}
+
+		@Override
+		public void newMessage(final Whisper<?> whisper) {
+			if (inside.incrementAndGet() != 1)
+				overlaps.incrementAndGet();
+			try {
+				count++;
+				final Integer value = (Integer) whisper.getMsg();
+				if (value.intValue() < 0)
+					throw new IllegalStateException(value.toString());
+				if (handled != null)
+					handled.put(value, Boolean.TRUE);
+			} finally {
+				inside.decrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class GossipMongerFilterTest {
+	private static final WhisperFilter EVEN = new WhisperFilter() {
+		@Override
+		public boolean accept(final Whisper<?> whisper) {
+			return ((((Integer) whisper.getMsg()).intValue() & 1) == 0);
+		}
+	};
+	private static final WhisperKey IDENTITY = new WhisperKey() {
+		@Override
+		public Object key(final Whisper<?> whisper) {
+			return whisper.getMsg();
+		}
+	};
+
+	private final GossipMonger monger = new GossipMonger();
+
+	@After
+	public void shutdown() {
+		monger.shutdown();
+	}
+
+	@Test
+	public void testFilteredOnlyAccepted() {
+		final CountingTalker talker = new CountingTalker(monger, "listener");
+		talker.registerFilter("numbers", EVEN);
+		for (int i = 0; i < 10; i++) {
+			send("numbers", i);
+		}
+		assertEquals(5, talker.received.get());
+	}
+
+	@Test
+	public void testDeliveredOnce() {
+		final CountingTalker plain = new CountingTalker(monger, "plain");
+		plain.registerExtraType("numbers");
+		plain.registerFilter("numbers", EVEN);
+		final CountingTalker filtered = new CountingTalker(monger, "filtered");
+		filtered.registerFilter("numbers", EVEN);
+		filtered.registerFilter("numbers", IDENTITY, Integer.valueOf(2));
+		final TalkerGroup group = new TalkerGroup(monger, "numbers", IDENTITY,
+				TalkerGroup.DEFAULT_REPLICAS);
+		group.join(plain);
+		group.register();
+		for (int i = 0; i < 10; i++) {
+			send("numbers", i);
+		}
+		// Plain recipient of all, even if the filter and the group match
+		assertEquals(10, plain.received.get());
+		assertEquals(5, filtered.received.get());
+	}
+
+	private void send(final String type, final int value) {
+		monger.send(new Whisper<Integer>(monger.getDestination(type), Integer.valueOf(value)));
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class GossipMongerJmxTest {
+	private static final int TALKERS = 16;
+	private final GossipMonger monger = new GossipMonger();
+
+	@After
+	public void shutdown() {
+		monger.shutdown();
+	}
+
+	@Test(timeout = 10000)
+	public void testEnableDisable() throws JMException {
+		for (int i = 0; i < TALKERS; i++) {
+			new CountingTalker(monger, "jmx-test-" + i).registerListener();
+		}
+		monger.setJmxEnabled(true);
+		assertEquals(TALKERS, registered());
+		monger.setJmxEnabled(false);
+		assertEquals(0, registered());
+		monger.setJmxEnabled(true);
+		assertEquals(TALKERS, registered());
+		monger.setJmxEnabled(false);
+		assertEquals(0, registered());
+	}
+
+	@Test
+	public void testGroupMember() throws JMException {
+		final TalkerGroup group = new TalkerGroup(monger, "jmx-group", new WhisperKey() {
+			@Override
+			public Object key(final Whisper<?> whisper) {
+				return whisper.getMsg();
+			}
+		}, TalkerGroup.DEFAULT_REPLICAS);
+		final CountingTalker member = new CountingTalker(monger, "jmx-test-0");
+		group.join(member);
+		group.register();
+		assertTrue(monger.getMetrics().contains(monger.getMetrics(member)));
+		monger.setJmxEnabled(true);
+		assertEquals(1, registered());
+		monger.setJmxEnabled(false);
+		assertEquals(0, registered());
+	}
+
+	private static int registered() throws JMException {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		int count = 0;
+		for (int i = 0; i < TALKERS; i++) {
+			final ObjectName pattern = new ObjectName("org.javastack.figaro:type=Talker,name="
+					+ ObjectName.quote("jmx-test-" + i) + ",*");
+			count += server.queryNames(pattern, null).size();
+		}
+		return count;
+	}
+}
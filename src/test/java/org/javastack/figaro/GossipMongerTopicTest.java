@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class GossipMongerTopicTest {
+	private final GossipMonger monger = new GossipMonger();
+
+	@After
+	public void shutdown() {
+		monger.shutdown();
+	}
+
+	@Test
+	public void testPatternMatchesExistingAndFutureNames() {
+		final CountingTalker talker = new CountingTalker(monger, "listener");
+		send("orders.eu");
+		talker.registerExtraType("orders.*");
+		send("orders.eu");
+		send("orders.us");
+		send("orders.eu.created");
+		send("invoices.eu");
+		assertEquals(2, talker.received.get());
+	}
+
+	@Test
+	public void testUnregisterPatternKeepsOwnName() {
+		final CountingTalker talker = new CountingTalker(monger, "orders.eu");
+		talker.registerListener();
+		talker.registerExtraType("orders.*");
+		send("orders.eu");
+		assertEquals(1, talker.received.get());
+		talker.unregisterExtraType("orders.*");
+		send("orders.eu");
+		send("orders.us");
+		assertEquals(2, talker.received.get());
+	}
+
+	@Test
+	public void testUnregisterPatternKeepsExactType() {
+		final CountingTalker talker = new CountingTalker(monger, "listener");
+		talker.registerExtraType("orders.*");
+		talker.registerExtraType("orders.eu");
+		talker.unregisterExtraType("orders.*");
+		send("orders.eu");
+		send("orders.us");
+		assertEquals(1, talker.received.get());
+	}
+
+	@Test
+	public void testUnregisterExactKeepsPattern() {
+		final CountingTalker talker = new CountingTalker(monger, "listener");
+		talker.registerExtraType("orders.eu");
+		talker.registerExtraType("orders.*");
+		talker.unregisterExtraType("orders.eu");
+		send("orders.eu");
+		assertEquals(1, talker.received.get());
+		talker.unregisterExtraType("orders.*");
+		send("orders.eu");
+		assertEquals(1, talker.received.get());
+	}
+
+	@Test
+	public void testUnregisterPatternKeepsOtherPattern() {
+		final CountingTalker talker = new CountingTalker(monger, "listener");
+		talker.registerExtraType("orders.*");
+		talker.registerExtraType("orders.#");
+		talker.unregisterExtraType("orders.*");
+		send("orders.eu");
+		assertEquals(1, talker.received.get());
+	}
+
+	@Test
+	public void testUnregisterListenerRemovesAll() {
+		final CountingTalker talker = new CountingTalker(monger, "orders.eu");
+		talker.registerListener();
+		talker.registerExtraType("orders.*");
+		talker.unregisterListener();
+		send("orders.eu");
+		send("orders.us");
+		assertEquals(0, talker.received.get());
+	}
+
+	private void send(final String type) {
+		monger.send(new Whisper<String>(monger.getDestination(type), type));
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of Integer messages (4 bytes), with values to test failures
+ */
+class IntCodec implements WhisperCodec {
+	/**
+	 * Encoded as zero bytes
+	 */
+	static final int EMPTY = -1;
+	/**
+	 * Encoding throws IllegalArgumentException
+	 */
+	static final int INVALID = -2;
+
+	@Override
+	public byte[] encode(final Whisper<?> whisper) {
+		final int value = value(whisper);
+		if (value == EMPTY)
+			return new byte[0];
+		if (value == INVALID)
+			throw new IllegalArgumentException("Invalid value");
+		return ByteBuffer.allocate(4).putInt(value).array();
+	}
+
+	@Override
+	public Whisper<?> decode(final byte[] data) {
+		return whisper(ByteBuffer.wrap(data).getInt());
+	}
+
+	static Whisper<Integer> whisper(final int value) {
+		return new Whisper<Integer>(0, Integer.valueOf(value));
+	}
+
+	static int value(final Whisper<?> whisper) {
+		return ((Integer) whisper.getMsg()).intValue();
+	}
+}
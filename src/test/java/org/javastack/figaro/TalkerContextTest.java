@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TalkerContextTest {
+	@Test
+	public void testScheduleRejected() {
+		final ManualDispatcher dispatcher = new ManualDispatcher();
+		final GossipMonger monger = new GossipMonger(dispatcher);
+		try {
+			final List<Object> received = new ArrayList<Object>();
+			final AbstractTalker talker = new AbstractTalker(monger, "queued",
+					TalkerType.QUEUED_UNBOUNDED) {
+				@Override
+				public void newMessage(final Whisper<?> whisper) {
+					received.add(whisper.getMsg());
+				}
+			};
+			talker.registerListener();
+			final Destination dest = monger.getDestination(talker.getName());
+			final WhisperPool<Integer> pool = new WhisperPool<Integer>(4, true);
+			dispatcher.reject = true;
+			try {
+				monger.send(pool.acquire(null, dest, Integer.valueOf(1)));
+				fail("Rejection not thrown");
+			} catch (RejectedExecutionException e) {
+				// Expected
+			}
+			// Queued message is kept, next message schedules again
+			assertTrue(talker.getState().needScheduling());
+			dispatcher.reject = false;
+			monger.send(pool.acquire(null, dest, Integer.valueOf(2)));
+			assertEquals(1, dispatcher.tasks.size());
+			dispatcher.tasks.remove(0).run();
+			assertEquals(2, received.size());
+			assertEquals(Integer.valueOf(1), received.get(0));
+			assertEquals(Integer.valueOf(2), received.get(1));
+		} finally {
+			monger.shutdown();
+		}
+	}
+
+	@Test
+	public void testLazyChest() throws InterruptedException {
+		final int producers = 4;
+		final int messages = 50000;
+		final GossipMonger monger = new GossipMonger();
+		try {
+			final AtomicInteger received = new AtomicInteger();
+			final AtomicInteger disordered = new AtomicInteger();
+			final AbstractTalker talker = new AbstractTalker(monger, "lazy", TalkerType.QUEUED_BOUNDED,
+					new TalkerConfig().setLazyChest(true).setCapacity(16)) {
+				private final int[] last = new int[producers];
+
+				@Override
+				public void newMessage(final Whisper<?> whisper) {
+					final int[] value = (int[]) whisper.getMsg();
+					if (value[1] != last[value[0]]++)
+						disordered.incrementAndGet();
+					received.incrementAndGet();
+				}
+			};
+			talker.registerListener();
+			final Destination dest = monger.getDestination(talker.getName());
+			final Thread[] threads = new Thread[producers];
+			for (int p = 0; p < producers; p++) {
+				final int producer = p;
+				threads[p] = new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < messages; i++) {
+							monger.send(new Whisper<int[]>(dest, new int[] { producer, i }));
+						}
+					}
+				};
+				threads[p].start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			final long deadline = System.currentTimeMillis() + 30000;
+			while ((received.get() < (producers * messages)) && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(1);
+			}
+			// Chest is handed over between pool and talker, without loss or reorder
+			assertEquals(producers * messages, received.get());
+			assertEquals(0, disordered.get());
+		} finally {
+			monger.shutdown();
+		}
+	}
+
+	/**
+	 * Keep tasks to run them in test thread, or reject them
+	 */
+	private static class ManualDispatcher implements Dispatcher {
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		boolean reject = false;
+
+		@Override
+		public void dispatch(final Runnable task) {
+			if (reject)
+				throw new RejectedExecutionException("Rejected by test");
+			tasks.add(task);
+		}
+
+		@Override
+		public int getThroughput() {
+			return AbstractDispatcher.DEFAULT_THROUGHPUT;
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public void shutdownNow() {
+		}
+
+		@Override
+		public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+			return true;
+		}
+	}
+}
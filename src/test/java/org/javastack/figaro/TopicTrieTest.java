@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.javastack.figaro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TopicTrieTest {
+	private final GossipMonger monger = new GossipMonger();
+	private final Talker one = new CountingTalker(monger, "one");
+	private final Talker any = new CountingTalker(monger, "any");
+	private final Talker exact = new CountingTalker(monger, "exact");
+
+	@After
+	public void shutdown() {
+		monger.shutdown();
+	}
+
+	@Test
+	public void testIsPattern() {
+		assertTrue(TopicTrie.isPattern("orders.*"));
+		assertTrue(TopicTrie.isPattern("#"));
+		assertTrue(TopicTrie.isPattern("orders.#.created"));
+		assertFalse(TopicTrie.isPattern("orders.eu"));
+		assertFalse(TopicTrie.isPattern("orders.e*"));
+	}
+
+	@Test
+	public void testMatch() {
+		final TopicTrie trie = new TopicTrie();
+		assertTrue(trie.add("orders.*", one));
+		assertTrue(trie.add("orders.#", any));
+		assertTrue(trie.add("orders.eu.created", exact));
+		assertFalse(trie.add("orders.*", one));
+		assertEquals(set(one, any), trie.match("orders.eu"));
+		// "#" match zero segments
+		assertEquals(set(any), trie.match("orders"));
+		assertEquals(set(any, exact), trie.match("orders.eu.created"));
+		assertEquals(set(), trie.match("invoices.eu"));
+	}
+
+	@Test
+	public void testMatchAnyInMiddle() {
+		final TopicTrie trie = new TopicTrie();
+		trie.add("orders.#.created", any);
+		assertEquals(set(any), trie.match("orders.created"));
+		assertEquals(set(any), trie.match("orders.eu.created"));
+		assertEquals(set(any), trie.match("orders.eu.es.created"));
+		assertEquals(set(), trie.match("orders.eu.deleted"));
+	}
+
+	@Test
+	public void testRemove() {
+		final TopicTrie trie = new TopicTrie();
+		trie.add("orders.*", one);
+		trie.add("orders.#", any);
+		assertTrue(trie.remove("orders.*", one));
+		assertFalse(trie.remove("orders.*", one));
+		assertEquals(set(any), trie.match("orders.eu"));
+		assertTrue(trie.remove("orders.#", any));
+		assertTrue(trie.isEmpty());
+		assertEquals(set(), trie.match("orders.eu"));
+	}
+
+	@Test
+	public void testMatchNames() {
+		final TopicTrie trie = new TopicTrie();
+		trie.indexNames(Arrays.asList("orders.eu", "orders.us", "orders.eu.created", "invoices.eu"));
+		trie.addName("orders.asia");
+		assertEquals(new HashSet<String>(Arrays.asList("orders.eu", "orders.us", "orders.asia")),
+				trie.matchNames("orders.*"));
+		assertEquals(new HashSet<String>(Arrays.asList("orders.eu", "invoices.eu")),
+				trie.matchNames("*.eu"));
+		assertEquals(new HashSet<String>(Arrays.asList("orders.eu", "orders.us", "orders.asia",
+				"orders.eu.created")), trie.matchNames("orders.#"));
+		assertEquals(Collections.<String> emptySet(), trie.matchNames("payments.#"));
+	}
+
+	private static Set<Talker> set(final Talker... talkers) {
+		return new HashSet<Talker>(Arrays.asList(talkers));
+	}
+}